@@ -1,40 +1,82 @@
 /**
- * FollowerStore is implemented using graphs based on hash tables of adjacency lists and sets based on hash tables.
- * The hash maps use the users' IDs as keys. The hashing is done using the remainder of the user's ID divided by
- * the table's size. Two directed graphs are used, one where an edge between A and B means that B is A's follower,
- * and another one where an edge between A and B means that B is followed by A. While these relationships could
- * have easily been represented using a single graph, the advantage of this approach, while taking twice as much
- * memory, is that several methods, such as getFollows(), have their time complexities reduced from quadratic to
- * linear. Also, sets based on hash tables are used for the getMutualFollows() and getMutualFollowers() operations,
- * since they provide a better time complexity (linear instead of quadratic).
+ * FollowerStore is implemented using graphs in compressed sparse row form and hash tables. Every
+ * user is given a node number by a hash table keyed by user ID, which both graphs share, and the graphs keep the
+ * relationships of all nodes in a few primitive arrays, ordered by node, along with a small delta of the most recent
+ * relationships that is merged into them every so often. The hash tables use open addressing, and double in size
+ * whenever they become half full, so looking up a user never takes more than a few steps. Two directed graphs are
+ * used, one where an edge between A and B means that B is A's follower, and another one where an edge between A and
+ * B means that B is followed by A. While these relationships could have easily been represented using a single graph,
+ * the advantage of this approach, while taking twice as much memory, is that several methods, such as getFollows(),
+ * have their time complexities reduced from quadratic to linear. Also, the relationships of every node are listed by
+ * the node they point to, so the getMutualFollows() and getMutualFollowers() operations only have to intersect two
+ * sorted lists, which takes less than linear time when one list is much shorter than the other.
  *
  * The worst-case memory complexity is O(n^2), due to the usage of the graph structures. More precisely, 2n^2 memory is
- * used for the graphs in the worst case, and 2n for the sets. However, on average, since using adjacency lists for the
- * graphs, the memory complexity is much better!
+ * used for the graphs in the worst case. However, the graphs only take O(n + m) memory for m
+ * relationships, which is much better on average: every relationship only takes three ints and a long in each graph,
+ * instead of several objects. Nodes with many relationships also keep them in a hash set, which at most doubles the
+ * memory they use, and the ranking of the users by number of followers takes three ints per user. Users with at least
+ * SKETCH_THRESHOLD followers also keep a signature of SKETCH_SIZE ints.
  *
- * The average time complexity for addFollower() is O(1), due to the usage of a hash table to find the node where the edge must
- * be added. Worst case O(n).
- * The average time complexity for getFollowers() is O(k*logk), where k is the number of followers that must be retrieved (also,
- * same remark as above). This is because the array also has to be sorted. Worst case O(n*logn);
- * The average time complexity for getFollows() is O(k*logk) (same reasons as above). Worst case O(n*logn);
- * The average time complexity for isAFollower() is O(k) (accessing the node in O(1) and searching for the required follower
- * in O(k)). Worst case O(n);
- * The time complexity for getNumFollowers() is O(1), since the numbers of followers for all nodes are stored in the hash tables.
- * The time complexity for getMutualFollowers() is O(n + m + k*logk), where n is the number of followers of the first user,
- * m is the number of followers of the second user and k is the number of common followers of the two users. This is because
- * the intersection has a complexity of O(n + m), and the sorting of the resulting set is done in O(k*logk);
- * The time complexity for getMutualFollows() is O(n + m + k*logk) (same reasons as above).
- * The time complexity for getTopUsers() is O(nlogn), since information about all n users must be retrived and sorted.
+ * The average time complexity for addFollower() is O(1), since finding the node where the edge must be added is done in
+ * O(1) through the node index, and checking for an existing relationship takes O(1) as well (see isAFollower()). The
+ * relationship is added to the delta, which is merged with the rest of the graph in O(n + m) once it holds an eighth
+ * of the relationships, so this only adds O(1) amortised time. A relationship older than the node's most recent one
+ * leaves the node's delta out of date order, and it is put back in order before addFollower() returns, in O(d) for d
+ * relationships when it is the only one out of place (O(d*logd) after addFollowers()).
+ * The average time complexity for removeFollower() is O(d + logk) for a user with k relationships, d of which are in the
+ * delta: the relationship is either unlinked from the node's chain in the delta, or found by binary search and marked
+ * as removed in the CSR arrays, which are only rebuilt by the next merge. Worst case O(n);
+ * The time complexity for addFollowers() is O(m*logm) for m new relationships, since they are sorted once so that each
+ * node is looked up only once per graph.
+ * The average time complexity for getFollowers() is O(k), where k is the number of followers that must be retrieved,
+ * since the relationships of every node are kept in date order, so they are only copied. Worst case O(n);
+ * The time complexity for getFollowers() with an offset and a limit is O(limit + d*logk), where d is the number of the
+ * user's followers that are still in the delta, since only their positions have to be found to skip the first ones;
+ * The average time complexity for getFollows() is O(k) (same reasons as above). Worst case O(n);
+ * The time complexity for countFollowersGainedBetween() is O(logk + d), and O(r + logk + d) for getFollowersBetween()
+ * with r results, since the followers in the range are found by binary search in the user's date-ordered followers;
+ * getFollowerGrowth() counts every period the same way.
+ * The average time complexity for isAFollower() is O(1): the node is accessed in O(1), and users with at least
+ * ADJACENCY_SET_THRESHOLD followers keep them in a hash set as well, while the lists of the other users are short.
+ * The time complexity for getNumFollowers() is O(1), since the numbers of followers for all nodes are stored in the graphs.
+ * The time complexity for getMutualFollowers() is O(n*log(m/n) + k*logk), where n is the smaller and m the larger number of
+ * followers of the two users, and k is the number of common followers of the two users. This is because the intersection
+ * of the two sorted lists is done by galloping through the longer one, and the result is sorted in O(k*logk), while
+ * the few relationships still in the delta only have to be sorted by node first;
+ * The time complexity for getMutualFollows() is O(n*log(m/n) + k*logk) (same reasons as above).
+ * The time complexity for getTopUsers() is O(n), and O(k) when only the top k users are asked for, since the users are
+ * kept sorted by number of followers in a ranking that is updated in O(1) whenever a user gains a follower.
+ * The time complexity for recommend() is O(a*b + c*logk), where a is the number of follows of the user and b the number
+ * of follows of each of them, both of which are capped, and c the number of users they follow, k being the number of
+ * users asked for.
+ * The time complexity for estimateJaccard() and estimateMutualFollowerCount() is O(SKETCH_SIZE) for two users with at
+ * least SKETCH_THRESHOLD followers each, since their followers are compared through MinHash signatures, which are
+ * updated in O(SKETCH_SIZE) whenever they gain a follower; for other users they are counted exactly, as above.
+ * The time complexity for computeInfluence() is O(i*(n + m) + n*logn) for i iterations, the work of each iteration being
+ * split between all cores, and getTopUsersByInfluence() then takes O(k) for the top k users.
+ * The time complexity for distance() and shortestPath() is O(n + m) in the worst case, since every user and relationship
+ * may have to be visited, but the search goes from both ends at once, so for users at distance d it only visits about
+ * 2*b^(d/2) users instead of b^d, where b is the average number of follows.
  *
  * The main advantage of using a graph to represent the following relations is that insertions and retrievals become
- * trivial: locate the node and add to the corresponding list a new element, or retrieve the entire list. Using a hash
- * map for the list of nodes instead of a linked list has the advantage of allowing access to a specific node in O(1)
- * instead of O(n) on average, with little effect on the memory used. The usage of two graphs instead of one, while costly,
- * allows for better time complexity of both relationships operations. If, for example, a single graph were to be used,
- * where an edge between A and B meant that A is followed by B, then getFollows() and getMutualFollows() would require
- * searching through the entire graph, having quadratic complexity. The usage of hash map sets for the getMutualFollows()
- * and getMutualFollowers() methods gives a linear complexity for searching, instead of the quadratic complexity that
- * would have been required by the usage of lists.
+ * trivial: locate the node and add a new relationship to it, or retrieve all its relationships, which are next to each
+ * other in memory (except for the few in the delta), so they can be copied quickly. Using a hash map to find the
+ * nodes instead of a linked list has the advantage of allowing access to a specific node in O(1) instead of O(n) on
+ * average, with little effect on the memory used; since the hash map grows along with the number of users, instead
+ * of having a fixed number of buckets, this stays true however many users there are. The usage of two graphs instead
+ * of one, while costly, allows for better time complexity of both relationships operations. If, for example, a single
+ * graph were to be used, where an edge between A and B meant that A is followed by B, then getFollows() and
+ * getMutualFollows() would require searching through the entire graph, having quadratic complexity. Keeping every
+ * node's relationships sorted by node for the getMutualFollows() and getMutualFollowers() methods means that no hash
+ * set has to be built on every call, and that a user with few followers can be compared with one with millions of
+ * them by only looking at a few positions of the longer list, instead of going through all of it.
+ *
+ * The store can be used by many threads at once, as it is by the web app: it is guarded by a read-write lock, so any
+ * number of threads can read it at the same time, while changes are made one at a time. Striping the lock by user
+ * wouldn't help, since both graphs keep all relationships in shared CSR arrays that every merge rebuilds. Reading the
+ * store never changes it: relationships added out of date order are sorted, and follower signatures are rebuilt,
+ * before the write lock is released, rather than when they are next read.
  *
  * @author: 1504815
 */
@@ -45,573 +87,2434 @@ import uk.ac.warwick.java.cs126.models.Weet;
 import uk.ac.warwick.java.cs126.models.User;
 
 import java.util.Date;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 
 public class FollowerStore implements IFollowerStore {
-    // this class allows the creation of pairs of two (not necessarily different) types of objects
-    class Pair<F, S> {
-        private F first;
-        private S second;
-
-        // basic constructor that initialises the components
-        public Pair(F first, S second) {
-            this.first = first;
-            this.second = second;
+    /*
+     * Index that gives every user with at least one relationship a node number, from 0 to the number of such users,
+     * shared by both graphs. User IDs are looked up using open addressing with linear probing, in primitive arrays,
+     * so no Integer objects are created, and the table doubles in size whenever it becomes half full, which keeps
+     * lookups O(1) however many users there are. Node numbers are dense, so the graphs can keep their nodes in arrays.
+     */
+    class NodeIndex {
+        private int[] keys; // user IDs, by hash table slot
+        private int[] nodes; // node number of each user ID plus one; zero marks an empty slot
+        private int[] ids; // user ID of each node number
+        private int size; // number of users in the index
+
+        // initialise the table with a power of two capacity, so that the hash can be reduced with a mask
+        public NodeIndex() {
+            keys = new int[16];
+            nodes = new int[16];
+            ids = new int[8];
+            size = 0;
         }
 
-        // retrieve the first object
-        public F getFirst() {
-            return first;
+        // spread the bits of a user ID over the table
+        private int slot(int id, int mask) {
+            int hash = id * 0x9E3779B9;
+            return (hash ^ (hash >>> 16)) & mask;
         }
 
-        // retrieve the second object
-        public S getSecond() {
-            return second;
-        }
+        // return the node number of the user with the given ID, or -1 if the user has no node
+        public int getNode(int id) {
+            int mask = keys.length - 1;
+            int i = slot(id, mask);
 
-        // set the value of the first object
-        public void setFirst(F newFirst) {
-            this.first = newFirst;
+            while (nodes[i] != 0) {
+                if (keys[i] == id) {
+                    return nodes[i] - 1;
+                }
+                i = (i + 1) & mask;
+            }
+            return -1;
         }
 
-        // set the value of the second object
-        public void setSecond(S newSecond) {
-            this.second = newSecond;
-        }
-    }
+        // return the node number of the user with the given ID, giving the user the next node number if it has none
+        public int addNode(int id) {
+            int mask = keys.length - 1;
+            int i = slot(id, mask);
+
+            while (nodes[i] != 0) {
+                if (keys[i] == id) {
+                    return nodes[i] - 1;
+                }
+                i = (i + 1) & mask;
+            }
 
-    // this class helps store objects as elements of a Singly Linked List
-    class ListElement<E> {
-        private E value; // object value of the list element
-        private ListElement<E> next; // link to the next element in the list
+            if (size == ids.length) {
+                int[] newIds = new int[size * 2];
 
-        // simple constructor that assigns a value to the list element
-        public ListElement(E value) {
-            this.value = value;
+                System.arraycopy(ids, 0, newIds, 0, size);
+                ids = newIds;
+            }
+            ids[size] = id;
+            keys[i] = id;
+            nodes[i] = ++size;
+            if (size * 2 > keys.length) {
+                resize();
+            }
+            return size - 1;
         }
 
-        // get the list element's value
-        public E getValue() {
-            return value;
+        // get the user ID of a node
+        public int getId(int node) {
+            return ids[node];
         }
 
-        // get the next list element
-        public ListElement<E> getNext() {
-            return next;
+        // get the number of nodes
+        public int size() {
+            return size;
         }
 
-        // set the next list element
-        public void setNext(ListElement<E> next) {
-            this.next = next;
+        // double the capacity of the table and re-insert all user IDs
+        private void resize() {
+            int[] oldKeys = keys;
+            int[] oldNodes = nodes;
+            int mask = oldKeys.length * 2 - 1;
+
+            keys = new int[oldKeys.length * 2];
+            nodes = new int[oldKeys.length * 2];
+            for (int j = 0; j < oldKeys.length; j++) {
+                if (oldNodes[j] != 0) {
+                    int i = slot(oldKeys[j], mask);
+                    while (nodes[i] != 0) {
+                        i = (i + 1) & mask;
+                    }
+                    keys[i] = oldKeys[j];
+                    nodes[i] = oldNodes[j];
+                }
+            }
         }
     }
 
-    // Singly Linked List of ListElement objects in which elements are added at the front
-    class LinkedList<E> {
-        private ListElement<E> head; // head of the list
-        private int size; // size of the list
-
-        // empty list constructor
-        public LinkedList() {
-            head = null;
+    /*
+     * Set of node numbers, using open addressing with linear probing; node numbers are stored plus one, so that zero
+     * marks an empty slot, and the table doubles in size whenever it becomes half full. Used by the graphs to find out
+     * in O(1) whether a node with many relationships is related to another node, without walking its list.
+     */
+    class NodeSet {
+        private int[] table; // node numbers plus one
+        private int size; // number of node numbers in the set
+
+        // initialise the table with a power of two capacity that can hold the given number of nodes
+        public NodeSet(int expected) {
+            int capacity = 16;
+            while (capacity < expected * 2) {
+                capacity *= 2;
+            }
+            table = new int[capacity];
             size = 0;
         }
 
-        // add element to the front
-        public void add(E value) {
-            ListElement<E> newElement = new ListElement<>(value);
+        // spread the bits of a node number over the table
+        private int slot(int node, int mask) {
+            int hash = node * 0x9E3779B9;
+            return (hash ^ (hash >>> 16)) & mask;
+        }
+
+        // check if the set contains the given node
+        public boolean contains(int node) {
+            int mask = table.length - 1;
+            int i = slot(node, mask);
 
-            newElement.setNext(head);
-            head = newElement;
-            size++;
+            while (table[i] != 0) {
+                if (table[i] == node + 1) {
+                    return true;
+                }
+                i = (i + 1) & mask;
+            }
+            return false;
         }
 
-        // get the size of the list
-        public int size() {
-            return size;
+        // add a node that isn't in the set yet
+        public void add(int node) {
+            int mask = table.length - 1;
+            int i = slot(node, mask);
+
+            while (table[i] != 0) {
+                i = (i + 1) & mask;
+            }
+            table[i] = node + 1;
+            if (++size * 2 > table.length) {
+                resize();
+            }
+        }
+
+        /*
+         * remove a node that is in the set; the nodes after it in the same run of slots are moved back into its slot if
+         * their hash doesn't put them after it, so that no lookup stops at the emptied slot too early
+         */
+        public void remove(int node) {
+            int mask = table.length - 1;
+            int i = slot(node, mask);
+
+            while (table[i] != node + 1) {
+                i = (i + 1) & mask;
+            }
+            table[i] = 0;
+            size--;
+
+            for (int j = (i + 1) & mask; table[j] != 0; j = (j + 1) & mask) {
+                int k = slot(table[j] - 1, mask);
+                if (i <= j ? (k <= i || k > j) : (k <= i && k > j)) {
+                    table[i] = table[j];
+                    table[j] = 0;
+                    i = j;
+                }
+            }
         }
 
-        // get the head of the list - useful when traversing the list
-        public ListElement<E> getHead() {
-            return head;
+        // double the capacity of the table and re-insert all nodes
+        private void resize() {
+            int[] oldTable = table;
+            int mask = oldTable.length * 2 - 1;
+
+            table = new int[oldTable.length * 2];
+            for (int j = 0; j < oldTable.length; j++) {
+                if (oldTable[j] != 0) {
+                    int i = slot(oldTable[j] - 1, mask);
+                    while (table[i] != 0) {
+                        i = (i + 1) & mask;
+                    }
+                    table[i] = oldTable[j];
+                }
+            }
         }
     }
 
     /*
-     * Hash map that stores relationship lists for every user to allow easy access to them;
-     * effectively a graph whose nodes (and subsequently their adjacency lists) are accessed through a hash table
+     * Directed graph in compressed sparse row (CSR) form: the relationships of all nodes are kept in primitive
+     * arrays, those of node i being at positions offsets[i] to offsets[i + 1] - 1, so a relationship only takes an int
+     * (the node it points to) and a long (its date, in milliseconds), and a node's relationships are next to each
+     * other in memory. Since these arrays can't grow, new relationships go into a delta, where each node's new
+     * relationships are chained together through arrays as well; once the delta holds an eighth as many relationships
+     * as the CSR arrays, both are merged into new CSR arrays, so every relationship is copied O(1) times on average.
+     * A node's relationships are kept sorted by date, starting with the most recent one (and, for equal dates, with the
+     * one added last), both in the CSR arrays and in the delta, so they can be read without sorting them. New
+     * relationships usually arrive in date order and are simply put at the start of the chain; when one doesn't, the
+     * node is noted, and its chain is sorted again by sortDeltas() before the store's write lock is released, so that
+     * readers never have to change the graph (a writer reading the chain before then sorts it first).
+     * Removed relationships are unlinked from the delta chain, or marked as removed in the CSR arrays, where they are
+     * skipped until the next merge leaves them out.
+     * Every node's CSR relationships are also listed by the node they point to, along with their positions, so that
+     * the nodes two nodes are both related to can be found by intersecting two sorted lists, without building a set.
+     * Once a node has ADJACENCY_SET_THRESHOLD relationships, the nodes it is related to are also kept in a NodeSet,
+     * so checking whether two users are related stays O(1) even for users with hundreds of thousands of followers.
      */
-    class idHashMap {
-        // array of lists (buckets) that contain IDs, along with their relationships (as a list) and relationship count
-        private LinkedList<Pair<Pair<Integer, Integer>, LinkedList<Pair<Integer, Date>>>>[] table;
+    class Graph {
+        private int baseNodeCount; // number of nodes in the CSR arrays
+        private int[] offsets; // position of the first CSR relationship of every node, and the total at the end
+        private int[] targets; // node that every CSR relationship points to
+        private long[] dates; // date of every CSR relationship
+        private int[] byNode; // positions of every node's CSR relationships, sorted by the node they point to
+        private int[] sortedTargets; // node that the relationship at every position of byNode points to
+
+        private int[] deltaHeads; // last relationship of every node in the delta plus one; zero if there is none
+        private int[] deltaNext; // previous relationship of the same node in the delta plus one; zero if there is none
+        private int[] deltaTargets; // node that every relationship in the delta points to
+        private long[] deltaDates; // date of every relationship in the delta
+        private int deltaSize; // number of relationships in the delta
+        private boolean[] deltaUnsorted; // whether the chain of every node in the delta is out of date order
+        private int[] unsortedNodes; // nodes whose chains are out of date order, until sortDeltas() is called
+        private int unsortedCount; // number of nodes in unsortedNodes
+
+        private int removedSize; // number of relationships marked as removed in the CSR arrays
+
+        private int nodeCount; // number of nodes the per-node arrays are used for
+        private int[] counts; // number of relationships of every node, in the CSR arrays and in the delta
+        private int[] removedCounts; // number of relationships of every node marked as removed in the CSR arrays
+        private NodeSet[] sets; // nodes related to every node with many relationships, or null for the other nodes
+        private int[] changes; // number of relationships of every node added or removed so far
+
+        // initialise an empty graph with room for a few nodes and relationships
+        public Graph() {
+            baseNodeCount = 0;
+            offsets = new int[1];
+            targets = new int[0];
+            dates = new long[0];
+            byNode = new int[0];
+            sortedTargets = new int[0];
+            deltaHeads = new int[8];
+            deltaNext = new int[16];
+            deltaTargets = new int[16];
+            deltaDates = new long[16];
+            deltaSize = 0;
+            deltaUnsorted = new boolean[8];
+            unsortedNodes = new int[8];
+            unsortedCount = 0;
+            removedSize = 0;
+            nodeCount = 0;
+            counts = new int[8];
+            removedCounts = new int[8];
+            sets = new NodeSet[8];
+            changes = new int[8];
+        }
 
-        /*
-         * Simple constructor that initialises the table with 997 buckets (prime number);
-         * given a large number of users, say 100,000, this table size ensures that, on
-         * average, each bucket will contain around 100 elements, reasonable enough to
-         * allow quick access.
-         */
-        public idHashMap() {
-            table = new LinkedList[997];
-            initialiseTable();
+        // make sure the per-node arrays can hold the given node, doubling their size if they can't
+        private void ensureCapacity(int node) {
+            if (node >= nodeCount) {
+                nodeCount = node + 1;
+            }
+            if (node < counts.length) {
+                return;
+            }
+
+            int capacity = counts.length * 2;
+            while (capacity <= node) {
+                capacity *= 2;
+            }
+
+            int[] newDeltaHeads = new int[capacity];
+            boolean[] newDeltaUnsorted = new boolean[capacity];
+            int[] newCounts = new int[capacity];
+            int[] newRemovedCounts = new int[capacity];
+            NodeSet[] newSets = new NodeSet[capacity];
+            int[] newChanges = new int[capacity];
+
+            System.arraycopy(deltaHeads, 0, newDeltaHeads, 0, deltaHeads.length);
+            System.arraycopy(deltaUnsorted, 0, newDeltaUnsorted, 0, deltaUnsorted.length);
+            System.arraycopy(counts, 0, newCounts, 0, counts.length);
+            System.arraycopy(removedCounts, 0, newRemovedCounts, 0, removedCounts.length);
+            System.arraycopy(sets, 0, newSets, 0, sets.length);
+            System.arraycopy(changes, 0, newChanges, 0, changes.length);
+            deltaHeads = newDeltaHeads;
+            deltaUnsorted = newDeltaUnsorted;
+            counts = newCounts;
+            removedCounts = newRemovedCounts;
+            sets = newSets;
+            changes = newChanges;
         }
 
-        // initalise each table entry with an empty linked list
-        private void initialiseTable() {
-            for(int i = 0; i < table.length; i++) {
-                table[i] = new LinkedList<>();
+        // get the number of relationships of a node added or removed so far; -1 (no node) has none
+        public int getChanges(int node) {
+            if (node < 0 || node >= nodeCount) {
+                return 0;
             }
+            return changes[node];
         }
 
-        // return the head of the list of relationships of the user with the given ID
-        public ListElement<Pair<Pair<Integer, Integer>, LinkedList<Pair<Integer, Date>>>> getNode(int id) {
-            int location = id % table.length; // get the ID's location in the hash table
-            ListElement<Pair<Pair<Integer, Integer>, LinkedList<Pair<Integer, Date>>>> temp = table[location].getHead();
+        // get the number of relationships of a node; -1 (no node) has none
+        public int getCount(int node) {
+            if (node < 0 || node >= nodeCount) {
+                return 0;
+            }
+            return counts[node];
+        }
 
-            // go through the list until the ID is found
-            while (temp != null) {
-                if (temp.getValue().getFirst().getFirst() == id) {
-                    return temp;
-                }
-                temp = temp.getNext();
+        // get the number of relationships of a node in the CSR arrays
+        private int getBaseCount(int node) {
+            if (node >= baseNodeCount) {
+                return 0;
             }
+            return offsets[node + 1] - offsets[node];
+        }
 
-            // if this point is reached, then the ID has not been found
-            return null;
+        /*
+         * copy the nodes that a node is related to, and the dates of the relationships, into the given arrays, which
+         * must be able to hold getCount(node) elements, starting with the most recent relationship
+         */
+        public void getRelationships(int node, int[] nodes, long[] relationshipDates) {
+            getRelationships(node, 0, getCount(node), nodes, relationshipDates);
         }
 
-        // return the relationship between the two IDs, or null if it doesn't exist
-        public ListElement<Pair<Integer, Date>> getRelationship(int id1, int id2) {
-            ListElement<Pair<Pair<Integer, Integer>, LinkedList<Pair<Integer, Date>>>> relationshipList = getNode(id1);
+        /*
+         * copy at most limit of the nodes that a node is related to, and the dates of the relationships, into the given
+         * arrays, starting with the most recent relationship but skipping the first offset ones, and return how many
+         * were copied
+         */
+        public int getRelationships(int node, int offset, int limit, int[] nodes, long[] relationshipDates) {
+            return copyRelationships(node, offset, limit, nodes, relationshipDates, 0);
+        }
 
-            if (relationshipList == null) {
-                return null;
+        /*
+         * copy at most limit of a node's relationships into the given arrays from the given position, skipping the first
+         * offset ones, and return how many were copied. The CSR relationships and the delta chain are both sorted by
+         * date, so they are merged as they are copied; to skip the first relationships, only the position of every
+         * relationship in the delta among the CSR relationships has to be found, by binary search, so this takes
+         * O(limit + d*logk) for a node with k relationships, d of which are in the delta. If some of the node's CSR
+         * relationships were removed, the positions are wrong, so the first relationships are skipped one by one.
+         */
+        private int copyRelationships(int node, int offset, int limit, int[] nodes, long[] relationshipDates,
+                                      int position) {
+            int baseCount = getBaseCount(node);
+            int start = baseCount > 0 ? offsets[node] : 0;
+
+            if (getCount(node) == 0) {
+                return 0;
             }
+            sortDelta(node);
 
-            ListElement<Pair<Integer, Date>> temp = relationshipList.getValue().getSecond().getHead();
+            int e = deltaHeads[node];
+            int i = start;
+            int end = start + baseCount;
+            int skip = offset; // number of relationships left to skip one by one
+            int count = 0;
 
-            while (temp != null) {
-                if (temp.getValue().getFirst() == id2) {
-                    return temp;
+            if (removedCounts[node] == 0) {
+                // skip the relationships in the delta that come before the offset, counting those in the CSR arrays
+                // that come before each of them, which are the ones with a later date
+                int skipped = 0;
+                while (e != 0 && offset > 0 && skipped + countLater(start, baseCount, deltaDates[e - 1]) < offset) {
+                    e = deltaNext[e - 1];
+                    skipped++;
                 }
-                temp = temp.getNext();
-            }
 
-            return null;
-        }
+                i = start + offset - skipped;
+                skip = 0;
+                if (i > end) {
+                    return 0;
+                }
+            }
 
-        // return an array of all IDs
-        public int[] getIdArray() {
-            LinkedList<Integer> idList = new LinkedList<>();
-            int[] idArray;
+            // merge the rest of both lists; for equal dates, the relationships in the delta were added last
+            while (count < limit && (e != 0 || i < end)) {
+                int target;
+                long relationshipDate;
 
-            // store all IDs in a list
-            for (int i = 0; i < table.length; i++) {
-                ListElement<Pair<Pair<Integer, Integer>, LinkedList<Pair<Integer, Date>>>> temp = table[i].getHead();
+                if (e != 0 && (i == end || deltaDates[e - 1] >= dates[i])) {
+                    target = deltaTargets[e - 1];
+                    relationshipDate = deltaDates[e - 1];
+                    e = deltaNext[e - 1];
+                }
+                else {
+                    target = targets[i];
+                    relationshipDate = dates[i++];
+                }
 
-                while (temp != null) {
-                    idList.add(temp.getValue().getFirst().getFirst());
-                    temp = temp.getNext();
+                if (target == REMOVED) {
+                    continue;
+                }
+                if (skip > 0) {
+                    skip--;
+                    continue;
                 }
+                nodes[position + count] = target;
+                relationshipDates[position + count++] = relationshipDate;
             }
 
-            if (idList.size() == 0) {
-                return null;
+            return count;
+        }
+
+        /*
+         * copy the nodes that a node has been related to from one date to another (both inclusive, in milliseconds),
+         * and the dates of the relationships, into the given arrays, which must be able to hold them (see
+         * countBetween()), starting with the most recent relationship, and return how many were copied; the CSR
+         * relationships in the range are found by binary search, since they are sorted by date
+         */
+        public int getRelationshipsBetween(int node, long from, long to, int[] nodes, long[] relationshipDates) {
+            if (getCount(node) == 0 || from > to) {
+                return 0;
             }
+            sortDelta(node);
 
-            // convert to array
-            idArray = new int[idList.size()];
+            int baseCount = getBaseCount(node);
+            int start = baseCount > 0 ? offsets[node] : 0;
+            int count = 0;
 
-            ListElement<Integer> temp = idList.getHead();
-            int i = 0;
+            int i = start + countLater(start, baseCount, to);
+            int end = start + countNotEarlier(start, baseCount, from);
+            int e = deltaHeads[node];
+            while (e != 0 && deltaDates[e - 1] > to) {
+                e = deltaNext[e - 1];
+            }
+            if (e != 0 && deltaDates[e - 1] < from) {
+                e = 0;
+            }
 
-            while (temp != null) {
-                idArray[i++] = temp.getValue();
-                temp = temp.getNext();
+            // merge both ranges; for equal dates, the relationships in the delta were added last
+            while (e != 0 || i < end) {
+                if (e != 0 && (i == end || deltaDates[e - 1] >= dates[i])) {
+                    nodes[count] = deltaTargets[e - 1];
+                    relationshipDates[count++] = deltaDates[e - 1];
+                    e = deltaNext[e - 1];
+                    if (e != 0 && deltaDates[e - 1] < from) {
+                        e = 0;
+                    }
+                }
+                else if (targets[i] == REMOVED) {
+                    i++;
+                }
+                else {
+                    nodes[count] = targets[i];
+                    relationshipDates[count++] = dates[i++];
+                }
             }
 
-            return idArray;
+            return count;
         }
 
-        // add a node to the list; the node's position is determined through its user ID
-        public void addNode(int id) {
-            int location = id % table.length;
-            Pair<Pair<Integer, Integer>, LinkedList<Pair<Integer, Date>>> value = new Pair<>(new Pair<>(id, 0), new LinkedList<Pair<Integer, Date>>());
+        /*
+         * count the relationships of a node from one date to another (both inclusive, in milliseconds), in O(logk + d)
+         * for a node with k relationships, d of which are in the delta: the CSR relationships in the range are found
+         * by binary search, and only have to be gone through if some of them were removed
+         */
+        public int countBetween(int node, long from, long to) {
+            if (getCount(node) == 0 || from > to) {
+                return 0;
+            }
+
+            int baseCount = getBaseCount(node);
+            int start = baseCount > 0 ? offsets[node] : 0;
+
+            int first = start + countLater(start, baseCount, to);
+            int end = start + countNotEarlier(start, baseCount, from);
+            int count = end - first;
+            if (removedCounts[node] > 0) {
+                for (int i = first; i < end; i++) {
+                    if (targets[i] == REMOVED) {
+                        count--;
+                    }
+                }
+            }
 
-            table[location].add(value);
+            for (int e = deltaHeads[node]; e != 0; e = deltaNext[e - 1]) {
+                if (deltaDates[e - 1] >= from && deltaDates[e - 1] <= to) {
+                    count++;
+                }
+            }
+            return count;
         }
 
-        // add the pair (id2, relationshipDate) to the list corresponding to the given ID
-        public void addRelationship(int id1, int id2, Date relationshipDate) {
-            int location = id1 % table.length;
-            ListElement<Pair<Pair<Integer, Integer>, LinkedList<Pair<Integer, Date>>>> relationshipList = getNode(id1);
-            Pair<Integer, Date> value = new Pair<>(id2, relationshipDate);
+        // count the CSR relationships from start to start + count - 1, sorted by date, whose date is later than the given one
+        private int countLater(int start, int count, long date) {
+            int low = start, high = start + count;
 
-            relationshipList.getValue().getSecond().add(value);
-            relationshipList.getValue().getFirst().setSecond(relationshipList.getValue().getFirst().getSecond() + 1);
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (dates[middle] > date) {
+                    low = middle + 1;
+                }
+                else {
+                    high = middle;
+                }
+            }
+            return low - start;
         }
-    }
 
-    // hash map used as a set to store users for getting mutual followers/follows
-    class UserSet {
-        private LinkedList<Pair<Integer, Date>>[] table;
-        private int size;
+        // count the CSR relationships from start to start + count - 1, sorted by date, whose date is the given one or later
+        private int countNotEarlier(int start, int count, long date) {
+            int low = start, high = start + count;
 
-        // typical hash table constructor
-        public UserSet() {
-            table = new LinkedList[997];
-            size = 0;
-            initialiseTable();
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (dates[middle] >= date) {
+                    low = middle + 1;
+                }
+                else {
+                    high = middle;
+                }
+            }
+            return low - start;
         }
 
-        // initalise each table entry with an empty linked list
-        private void initialiseTable() {
-            for(int i = 0; i < table.length; i++) {
-                table[i] = new LinkedList();
+        /*
+         * sort the chain of a node in the delta by date, if a relationship was added to it out of order since it was last
+         * sorted, by sorting the positions of its relationships and linking them again in that order
+         */
+        private void sortDelta(int node) {
+            if (!deltaUnsorted[node]) {
+                return;
             }
-        }
 
-        // get the number of elements in the hash table
-        public int size() {
-            return size;
-        }
+            int count = 0;
+            for (int e = deltaHeads[node]; e != 0; e = deltaNext[e - 1]) {
+                count++;
+            }
 
-        // return the element that has the provided ID, or null if no such element exists
-        public Pair<Integer, Date> getElementById(int id) {
-            int location = id % table.length;
-            ListElement<Pair<Integer, Date>> temp = table[location].getHead();
+            // removing relationships can leave the chain with nothing left to sort
+            deltaUnsorted[node] = false;
+            if (count < 2) {
+                return;
+            }
 
-            while (temp != null) {
-                if (temp.getValue().getFirst() == id) {
-                    return temp.getValue();
+            // usually only the relationship added last is out of order, so it is moved to its place in O(d)
+            int head = deltaHeads[node] - 1;
+            int second = deltaNext[head];
+            boolean restSorted = true;
+            for (int e = second; e != 0 && deltaNext[e - 1] != 0 && restSorted; e = deltaNext[e - 1]) {
+                restSorted = deltaDates[e - 1] >= deltaDates[deltaNext[e - 1] - 1];
+            }
+            if (restSorted && deltaDates[head] >= deltaDates[second - 1]) {
+                // relationships removed since it was marked can leave the chain in order
+                return;
+            }
+            if (restSorted) {
+                int previous = second;
+                while (deltaNext[previous - 1] != 0 && deltaDates[deltaNext[previous - 1] - 1] > deltaDates[head]) {
+                    previous = deltaNext[previous - 1];
                 }
-                temp = temp.getNext();
+                deltaHeads[node] = second;
+                deltaNext[head] = deltaNext[previous - 1];
+                deltaNext[previous - 1] = head + 1;
+                return;
             }
 
-            return null;
-        }
-
-        // add a new (ID, date) pair to the set; if one with the same ID already exists, overwrite only if the new date is greater
-        public void add(int id, Date date) {
-            int location = id % table.length;
-            Pair<Integer, Date> testExistence = getElementById(id);
+            // the chain goes from the relationship added last backwards, and the sort is stable, so equal dates stay in that order
+            int[] positions = new int[count];
+            long[] positionDates = new long[count];
+            count = 0;
+            for (int e = deltaHeads[node]; e != 0; e = deltaNext[e - 1]) {
+                positions[count] = e - 1;
+                positionDates[count++] = deltaDates[e - 1];
+            }
+            sortByKeyDescending(positions, positionDates, count);
 
-            if (testExistence == null) {
-                table[location].add(new Pair<>(id, date));
-                size++;
+            deltaHeads[node] = positions[0] + 1;
+            for (int i = 0; i < count - 1; i++) {
+                deltaNext[positions[i]] = positions[i + 1] + 1;
             }
-            else if (date.compareTo(testExistence.getSecond()) > 0) {
-                testExistence.setSecond(date);
+            deltaNext[positions[count - 1]] = 0;
+        }
+
+        /*
+         * sort the chains of all nodes that were left out of date order by addRelationship(), so that reading the
+         * relationships of a node never has to change the graph, and many threads can read it at once
+         */
+        public void sortDeltas() {
+            for (int i = 0; i < unsortedCount; i++) {
+                sortDelta(unsortedNodes[i]);
             }
+            unsortedCount = 0;
         }
 
-        // return an array of all elements, or null if there are no elements
-        public Pair<Integer, Date>[] getElementArray() {
-            if (size == 0) {
-                return null;
+        /*
+         * check if there is a relationship between two nodes (either of which can be -1, for users without a node),
+         * using the node's set if it has one, and going through its relationships otherwise
+         */
+        public boolean contains(int node, int node2) {
+            if (getCount(node) == 0 || node2 < 0) {
+                return false;
+            }
+            if (sets[node] != null) {
+                return sets[node].contains(node2);
             }
 
-            Pair<Integer, Date>[] elementArray = new Pair[size];
-            int count = 0;
+            int baseCount = getBaseCount(node);
+            for (int i = 0; i < baseCount; i++) {
+                if (targets[offsets[node] + i] == node2) {
+                    return true;
+                }
+            }
+            for (int e = deltaHeads[node]; e != 0; e = deltaNext[e - 1]) {
+                if (deltaTargets[e - 1] == node2) {
+                    return true;
+                }
+            }
 
-            for (int i = 0; i < table.length; i++) {
-                ListElement<Pair<Integer, Date>> temp = table[i].getHead();
+            return false;
+        }
 
-                while (temp != null) {
-                    elementArray[count++] = temp.getValue();
-                    temp = temp.getNext();
+        // add a relationship with node2 since the given date (in milliseconds) to the given node
+        public void addRelationship(int node, int node2, long relationshipDate) {
+            ensureCapacity(node);
+
+            if (deltaSize == deltaTargets.length) {
+                int[] newDeltaNext = new int[deltaSize * 2];
+                int[] newDeltaTargets = new int[deltaSize * 2];
+                long[] newDeltaDates = new long[deltaSize * 2];
+
+                System.arraycopy(deltaNext, 0, newDeltaNext, 0, deltaSize);
+                System.arraycopy(deltaTargets, 0, newDeltaTargets, 0, deltaSize);
+                System.arraycopy(deltaDates, 0, newDeltaDates, 0, deltaSize);
+                deltaNext = newDeltaNext;
+                deltaTargets = newDeltaTargets;
+                deltaDates = newDeltaDates;
+            }
+            // a relationship older than the most recent one in the chain leaves it out of date order
+            if (deltaHeads[node] != 0 && relationshipDate < deltaDates[deltaHeads[node] - 1] && !deltaUnsorted[node]) {
+                if (unsortedCount == unsortedNodes.length) {
+                    int[] newUnsortedNodes = new int[unsortedCount * 2];
+                    System.arraycopy(unsortedNodes, 0, newUnsortedNodes, 0, unsortedCount);
+                    unsortedNodes = newUnsortedNodes;
+                }
+                unsortedNodes[unsortedCount++] = node;
+                deltaUnsorted[node] = true;
+            }
+            deltaNext[deltaSize] = deltaHeads[node];
+            deltaTargets[deltaSize] = node2;
+            deltaDates[deltaSize] = relationshipDate;
+            deltaHeads[node] = ++deltaSize;
+            counts[node]++;
+            changes[node]++;
+
+            if (sets[node] != null) {
+                sets[node].add(node2);
+            }
+            else if (counts[node] == ADJACENCY_SET_THRESHOLD) {
+                // the node now has many relationships, so put all the nodes it is related to in a set
+                int[] nodes = new int[counts[node]];
+                NodeSet set = new NodeSet(counts[node]);
+
+                getRelationships(node, nodes, new long[counts[node]]);
+                for (int i = 0; i < nodes.length; i++) {
+                    set.add(nodes[i]);
                 }
+                sets[node] = set;
             }
 
-            return elementArray;
+            mergeIfNeeded();
         }
-    }
 
-    idHashMap followerGraph; // directed graph whose edges point from users to their followers
-    idHashMap followGraph; // directed graph whose edges point from users to those they follow
+        /*
+         * remove the relationship with node2 from the given node, if there is one, and return whether it was removed;
+         * a relationship in the delta is unlinked from the node's chain, and one in the CSR arrays is found by binary
+         * search among the node's relationships sorted by node, in O(logk), and marked as removed
+         */
+        public boolean removeRelationship(int node, int node2) {
+            if (!contains(node, node2)) {
+                return false;
+            }
 
-    // initialise the two graphs
-    public FollowerStore() {
-        followerGraph = new idHashMap();
-        followGraph = new idHashMap();
-    }
+            boolean found = false;
+            for (int e = deltaHeads[node], previous = 0; e != 0 && !found; previous = e, e = deltaNext[e - 1]) {
+                if (deltaTargets[e - 1] == node2) {
+                    if (previous == 0) {
+                        deltaHeads[node] = deltaNext[e - 1];
+                    }
+                    else {
+                        deltaNext[previous - 1] = deltaNext[e - 1];
+                    }
+                    found = true;
+                }
+            }
 
-    // add user with ID uid2 as a follower to user with ID uid1
-    public boolean addFollower(int uid1, int uid2, Date followDate) {
-        boolean status = false;
+            if (!found) {
+                int low = offsets[node], high = offsets[node + 1];
+                while (low < high) {
+                    int middle = (low + high) >>> 1;
+                    if (sortedTargets[middle] < node2) {
+                        low = middle + 1;
+                    }
+                    else {
+                        high = middle;
+                    }
+                }
 
-        // if this user has no node in followGraph, create one
-        if (followGraph.getNode(uid1) == null) {
-            followGraph.addNode(uid1);
-        }
-        // if there is no relationship between the two, add one
-        if (followGraph.getRelationship(uid1, uid2) == null) {
-            followGraph.addRelationship(uid1, uid2, followDate);
-            // do the same for the other graph
-            if (followerGraph.getNode(uid2) == null) {
-                followerGraph.addNode(uid2);
+                // the relationship is also marked as removed in byNode, by flipping the bits of its position
+                targets[byNode[low]] = REMOVED;
+                byNode[low] = ~byNode[low];
+                removedCounts[node]++;
+                removedSize++;
             }
-            followerGraph.addRelationship(uid2, uid1, followDate);
-            status = true;
-        }
 
-        return status;
-    }
+            counts[node]--;
+            changes[node]++;
+            if (sets[node] != null) {
+                sets[node].remove(node2);
+            }
 
-    // return a list of all the followers of the user with ID uid
-    public int[] getFollowers(int uid) {
-        ListElement<Pair<Pair<Integer, Integer>, LinkedList<Pair<Integer, Date>>>> node = followerGraph.getNode(uid);
+            mergeIfNeeded();
+            return true;
+        }
 
-        // if the node doesn't exist, then there is nothing to return
-        if (node == null) {
-            return null;
+        // merge the delta into the CSR arrays once it, along with the removed relationships, is large enough
+        private void mergeIfNeeded() {
+            int changes = deltaSize + removedSize;
+
+            if (changes >= MIN_DELTA_SIZE && changes * 8 >= targets.length) {
+                merge();
+            }
         }
-        
-        ListElement<Pair<Integer, Date>> temp = node.getValue().getSecond().getHead();
-        int followerCount = node.getValue().getFirst().getSecond();
 
-        if (followerCount == 0) {
-            return null;
+        /*
+         * copy the nodes that both given nodes are related to into the given arrays, which must be able to hold as
+         * many elements as the smaller of the two nodes has relationships, along with the most recent date of the two
+         * relationships, and return their number; the CSR relationships of both nodes are already sorted by the node
+         * they point to, and only their few relationships in the delta have to be sorted
+         */
+        public int getMutualRelationships(int node1, int node2, int[] nodes, long[] relationshipDates) {
+            int[] delta1 = getSortedDelta(node1);
+            int[] delta2 = getSortedDelta(node2);
+            int[] deltaTargets1 = getTargets(delta1);
+            int[] deltaTargets2 = getTargets(delta2);
+            int base1 = getBaseCount(node1), base2 = getBaseCount(node2);
+            int start1 = base1 > 0 ? offsets[node1] : 0, start2 = base2 > 0 ? offsets[node2] : 0;
+            int count = 0;
+
+            // a node is related to another node either in the CSR arrays or in the delta, never both
+            count = intersect(sortedTargets, byNode, dates, start1, start1 + base1,
+                sortedTargets, byNode, dates, start2, start2 + base2, nodes, relationshipDates, count);
+            count = intersect(sortedTargets, byNode, dates, start1, start1 + base1,
+                deltaTargets2, delta2, deltaDates, 0, delta2.length, nodes, relationshipDates, count);
+            count = intersect(deltaTargets1, delta1, deltaDates, 0, delta1.length,
+                sortedTargets, byNode, dates, start2, start2 + base2, nodes, relationshipDates, count);
+            count = intersect(deltaTargets1, delta1, deltaDates, 0, delta1.length,
+                deltaTargets2, delta2, deltaDates, 0, delta2.length, nodes, relationshipDates, count);
+
+            return count;
         }
 
-        Pair<Integer, Date>[] followerArray = new Pair[followerCount];
-        int[] idArray = new int[followerCount];
-        int i = 0;
+        // return the positions of a node's relationships in the delta, sorted by the node they point to
+        private int[] getSortedDelta(int node) {
+            int count = 0;
+
+            if (node < 0 || node >= nodeCount) {
+                return new int[0];
+            }
+            for (int e = deltaHeads[node]; e != 0; e = deltaNext[e - 1]) {
+                count++;
+            }
 
-        // store the list into an array
-        while (temp != null) {
-            followerArray[i++] = temp.getValue();
-            temp = temp.getNext();
+            int[] positions = new int[count];
+            count = 0;
+            for (int e = deltaHeads[node]; e != 0; e = deltaNext[e - 1]) {
+                positions[count++] = e - 1;
+            }
+            sortIndices(positions, count, deltaTargets, deltaTargets);
+            return positions;
         }
 
-        // sort the array
-        quickSort(followerArray, 0, followerCount - 1);
+        // return the nodes that the relationships at the given positions of the delta point to
+        private int[] getTargets(int[] positions) {
+            int[] nodes = new int[positions.length];
 
-        // keep the IDs only
-        for (i = 0; i < followerCount; i++) {
-            idArray[i] = followerArray[i].getFirst();
+            for (int i = 0; i < positions.length; i++) {
+                nodes[i] = deltaTargets[positions[i]];
+            }
+            return nodes;
         }
 
-        return idArray;
-    }
+        /*
+         * Intersect two lists of relationships, given from start to end - 1 as the sorted nodes they point to and
+         * the positions of their dates, and append the common nodes to the given arrays from position count, with the
+         * most recent date of the two relationships; return the new number of elements. Every node of the shorter
+         * list is looked for in the longer list by galloping: the distance from the last node found is doubled until
+         * it is passed, then binary search is used, so the intersection takes O(a*log(b/a)) for lists of length a <= b,
+         * which is much less than O(a + b) when one user has far more relationships than the other.
+         */
+        private int intersect(int[] targets1, int[] positions1, long[] dates1, int start1, int end1,
+                              int[] targets2, int[] positions2, long[] dates2, int start2, int end2,
+                              int[] nodes, long[] relationshipDates, int count) {
+            if (end1 - start1 > end2 - start2) {
+                return intersect(targets2, positions2, dates2, start2, end2,
+                    targets1, positions1, dates1, start1, end1, nodes, relationshipDates, count);
+            }
 
-    // return a list of all those followed by the user with ID uid
-    public int[] getFollows(int uid) {
-        ListElement<Pair<Pair<Integer, Integer>, LinkedList<Pair<Integer, Date>>>> node = followGraph.getNode(uid);
+            int j = start2;
+            for (int i = start1; i < end1 && j < end2; i++) {
+                int target = targets1[i];
 
-        // if the node doesn't exist, then there is nothing to return
-        if (node == null) {
-            return null;
-        }
+                // find a step after which the node is passed
+                int step = 1;
+                while (j + step < end2 && targets2[j + step] < target) {
+                    step *= 2;
+                }
 
-        ListElement<Pair<Integer, Date>> temp = node.getValue().getSecond().getHead();
-        int followCount = node.getValue().getFirst().getSecond();
+                // find the first position that doesn't come before the node between the last two steps
+                int low = step == 1 ? j : j + step / 2;
+                int high = j + step < end2 ? j + step : end2;
+                while (low < high) {
+                    int middle = (low + high) >>> 1;
+                    if (targets2[middle] < target) {
+                        low = middle + 1;
+                    }
+                    else {
+                        high = middle;
+                    }
+                }
 
-        if (followCount == 0) {
-            return null;
-        }
+                j = low;
+                if (j < end2 && targets2[j] == target) {
+                    // relationships marked as removed have negative positions
+                    if (positions1[i] >= 0 && positions2[j] >= 0) {
+                        nodes[count] = target;
+                        relationshipDates[count++] = Math.max(dates1[positions1[i]], dates2[positions2[j]]);
+                    }
+                    j++;
+                }
+            }
 
-        Pair<Integer, Date>[] followArray = new Pair[followCount];
-        int[] idArray = new int[followCount];
-        int i = 0;
+            return count;
+        }
 
-        // store the list into an array
-        while (temp != null) {
-            followArray[i++] = temp.getValue();
-            temp = temp.getNext();
+        // merge the delta into the CSR arrays if any relationship was added or removed since the last merge
+        public void compact() {
+            if (deltaSize > 0 || removedSize > 0) {
+                merge();
+            }
         }
 
-        // sort the array
-        quickSort(followArray, 0, followCount - 1);
+        /*
+         * copy the position of the first CSR relationship of nodes 0 to n - 1, and the total at the end; every
+         * relationship must be in the CSR arrays (see compact()), so nodes that aren't in them have none
+         */
+        public int[] copyOffsets(int n) {
+            int[] copy = new int[n + 1];
+            int count = Math.min(n, baseNodeCount);
 
-        // keep the IDs only
-        for (i = 0; i < followCount; i++) {
-            idArray[i] = followArray[i].getFirst();
+            System.arraycopy(offsets, 0, copy, 0, count + 1);
+            for (int node = count + 1; node <= n; node++) {
+                copy[node] = offsets[count];
+            }
+            return copy;
         }
 
-        return idArray;
-    }
+        // copy the node that every CSR relationship points to, at the positions given by copyOffsets()
+        public int[] copyTargets() {
+            int[] copy = new int[targets.length];
 
-    // check if a user is the follower of the other
-    public boolean isAFollower(int uidFollower, int uidFollows) {
-        ListElement<Pair<Pair<Integer, Integer>, LinkedList<Pair<Integer, Date>>>> node = followerGraph.getNode(uidFollows);
-        ListElement<Pair<Integer, Date>> temp = node.getValue().getSecond().getHead();
+            System.arraycopy(targets, 0, copy, 0, targets.length);
+            return copy;
+        }
 
-        while (temp != null) {
-            if (temp.getValue().getFirst() == uidFollower) {
-                return true;
+        // merge the delta into new CSR arrays, in O(n + m) for n nodes and m relationships, and empty the delta
+        public void merge() {
+            int[] newOffsets = new int[nodeCount + 1];
+            for (int node = 0; node < nodeCount; node++) {
+                newOffsets[node + 1] = newOffsets[node] + counts[node];
             }
-            temp = temp.getNext();
-        }
 
-        return false;
-    }
+            int[] newTargets = new int[newOffsets[nodeCount]];
+            long[] newDates = new long[newOffsets[nodeCount]];
+            int[] newByNode = new int[newTargets.length];
+            int[] newSortedTargets = new int[newTargets.length];
+            for (int node = 0; node < nodeCount; node++) {
+                int start = newOffsets[node];
+                int baseCount = getBaseCount(node);
+
+                if (deltaHeads[node] == 0 && removedCounts[node] == 0) {
+                    // nothing changed, so the node's relationships are copied, and so is their order by node
+                    if (baseCount > 0) {
+                        System.arraycopy(targets, offsets[node], newTargets, start, baseCount);
+                        System.arraycopy(dates, offsets[node], newDates, start, baseCount);
+                        System.arraycopy(sortedTargets, offsets[node], newSortedTargets, start, baseCount);
+                        for (int i = 0; i < baseCount; i++) {
+                            newByNode[start + i] = byNode[offsets[node] + i] - offsets[node] + start;
+                        }
+                    }
+                    continue;
+                }
 
-    // get the number of followers of a given user
-    public int getNumFollowers(int uid) {
-        return followerGraph.getNode(uid).getValue().getFirst().getSecond();
+                // the CSR relationships and the delta chain are merged in date order, then sorted by node again
+                int count = copyRelationships(node, 0, counts[node], newTargets, newDates, start);
+                for (int i = 0; i < count; i++) {
+                    newByNode[start + i] = start + i;
+                }
+                sortIndices(newByNode, start, start + count, newTargets);
+                for (int i = start; i < start + count; i++) {
+                    newSortedTargets[i] = newTargets[newByNode[i]];
+                }
+                deltaHeads[node] = 0;
+                removedCounts[node] = 0;
+            }
+
+            baseNodeCount = nodeCount;
+            offsets = newOffsets;
+            targets = newTargets;
+            dates = newDates;
+            byNode = newByNode;
+            sortedTargets = newSortedTargets;
+            deltaNext = new int[16];
+            deltaTargets = new int[16];
+            deltaDates = new long[16];
+            deltaSize = 0;
+            removedSize = 0;
+        }
     }
 
-    // get the mutual followers of the two users provided
-    public int[] getMutualFollowers(int uid1, int uid2) {
-        UserSet mutualFollowers = new UserSet();
-        UserSet firstUserFollowers = new UserSet();
-        ListElement<Pair<Pair<Integer, Integer>, LinkedList<Pair<Integer, Date>>>> node;
-        ListElement<Pair<Integer, Date>> temp;
-        Pair<Integer, Date>[] mutualFollowersList;
-        int[] mutualFollowersIds;
+    /*
+     * Ranking of the nodes with followers by their number of followers, kept up to date as followers are added, so the
+     * top users never have to be sorted. The nodes are kept in an array sorted by number of followers, starting with
+     * the largest, and starts[c] holds the number of nodes with more than c followers, which is the position of the
+     * first node with exactly c followers. When a node with c followers gains one, it is swapped with the first node
+     * with c followers, and starts[c] is increased by one: the node is now the last one with c + 1 followers, and no
+     * other node has to move, so this takes O(1). Losing a follower is done the same way, with the last node with c
+     * followers and starts[c - 1].
+     */
+    class FollowerRanking {
+        private int[] ranked; // nodes with followers, sorted by number of followers
+        private int[] positions; // position of every node in ranked
+        private int[] starts; // number of nodes with more followers than every number of followers
+
+        // initialise an empty ranking
+        public FollowerRanking() {
+            ranked = new int[8];
+            positions = new int[8];
+            starts = new int[8];
+        }
 
-        // add the first user's followers to a set
-        node = followerGraph.getNode(uid1);
-        temp = node.getValue().getSecond().getHead();
+        // get the number of nodes with followers
+        public int size() {
+            return starts[0];
+        }
 
-        while (temp != null) {
-            firstUserFollowers.add(temp.getValue().getFirst(), temp.getValue().getSecond());
-            temp = temp.getNext();
+        // get the node at the given position, the node with the most followers being at position 0
+        public int get(int position) {
+            return ranked[position];
         }
 
-        // add only the common followers to the intersection set
-        node = followerGraph.getNode(uid2);
-        temp = node.getValue().getSecond().getHead();
+        // move a node that now has count followers, one more than before, up the ranking
+        public void increment(int node, int count) {
+            if (count == starts.length) {
+                int[] newStarts = new int[count * 2];
+                System.arraycopy(starts, 0, newStarts, 0, count);
+                starts = newStarts;
+            }
 
-        while (temp != null) {
-            if (firstUserFollowers.getElementById(temp.getValue().getFirst()) != null) {
-                mutualFollowers.add(temp.getValue().getFirst(), temp.getValue().getSecond());
-                temp = temp.getNext();
+            // a node gaining its first follower joins the ranking at the end, among the nodes with no followers
+            if (count == 1) {
+                if (starts[0] == ranked.length) {
+                    int[] newRanked = new int[ranked.length * 2];
+                    System.arraycopy(ranked, 0, newRanked, 0, ranked.length);
+                    ranked = newRanked;
+                }
+                if (node >= positions.length) {
+                    int[] newPositions = new int[Math.max(positions.length * 2, node + 1)];
+                    System.arraycopy(positions, 0, newPositions, 0, positions.length);
+                    positions = newPositions;
+                }
+                ranked[starts[0]] = node;
+                positions[node] = starts[0];
             }
-        }
 
-        mutualFollowersList = mutualFollowers.getElementArray();
+            swap(node, starts[count - 1]);
+            starts[count - 1]++;
+        }
 
-        if (mutualFollowersList.length == 0) {
-            return null;
+        // move a node that now has count followers, one fewer than before, down the ranking
+        public void decrement(int node, int count) {
+            swap(node, starts[count] - 1);
+            starts[count]--;
         }
 
-        mutualFollowersIds = new int[mutualFollowersList.length];
-        quickSort(mutualFollowersList, 0, mutualFollowersList.length - 1);
+        // swap a node with the node at the given position
+        private void swap(int node, int position) {
+            int other = ranked[position];
 
-        for (int i = 0; i < mutualFollowersList.length; i++) {
-            mutualFollowersIds[i] = mutualFollowersList[i].getFirst();
+            ranked[positions[node]] = other;
+            positions[other] = positions[node];
+            ranked[position] = node;
+            positions[node] = position;
         }
-
-        return mutualFollowersIds;
     }
 
-    // get the mutual follows of the two users provided
-    public int[] getMutualFollows(int uid1, int uid2) {
-        UserSet mutualFollows = new UserSet();
-        UserSet firstUserFollows = new UserSet();
-        ListElement<Pair<Pair<Integer, Integer>, LinkedList<Pair<Integer, Date>>>> node;
-        ListElement<Pair<Integer, Date>> temp;
-        Pair<Integer, Date>[] mutualFollowsList;
-        int[] mutualFollowsIds;
-
-        // add the first user's follows to a set
-        node = followGraph.getNode(uid1);
-        temp = node.getValue().getSecond().getHead();
+    /*
+     * Hash map from node numbers to ints, used to count how often nodes are reached when recommending users, and to
+     * remember where searches came from, using open addressing with linear probing on primitive arrays; node numbers
+     * are stored plus one, so that zero marks an empty slot, and the table doubles in size whenever it becomes half full
+     */
+    class NodeMap {
+        private int[] keys; // node numbers plus one
+        private int[] values; // value of every node
+        private int size; // number of nodes in the map
+
+        // initialise the table with a power of two capacity, so that the hash can be reduced with a mask
+        public NodeMap() {
+            keys = new int[64];
+            values = new int[64];
+            size = 0;
+        }
 
-        while (temp != null) {
-            firstUserFollows.add(temp.getValue().getFirst(), temp.getValue().getSecond());
-            temp = temp.getNext();
+        // spread the bits of a node number over the table
+        private int slot(int node, int mask) {
+            int hash = node * 0x9E3779B9;
+            return (hash ^ (hash >>> 16)) & mask;
         }
 
-        // add only the common follows to the intersection set
-        node = followGraph.getNode(uid2);
-        temp = node.getValue().getSecond().getHead();
+        // get the value of a node, or -1 if the node isn't in the map
+        public int get(int node) {
+            int mask = keys.length - 1;
+            int i = slot(node, mask);
 
-        while (temp != null) {
-            if (firstUserFollows.getElementById(temp.getValue().getFirst()) != null) {
-                mutualFollows.add(temp.getValue().getFirst(), temp.getValue().getSecond());
-                temp = temp.getNext();
+            while (keys[i] != 0) {
+                if (keys[i] == node + 1) {
+                    return values[i];
+                }
+                i = (i + 1) & mask;
             }
+            return -1;
         }
 
-        mutualFollowsList = mutualFollows.getElementArray();
-
-        if (mutualFollowsList.length == 0) {
-            return null;
-        }
+        // set the value of a node that isn't in the map yet
+        public void put(int node, int value) {
+            int mask = keys.length - 1;
+            int i = slot(node, mask);
 
-        mutualFollowsIds = new int[mutualFollowsList.length];
-        quickSort(mutualFollowsList, 0, mutualFollowsList.length - 1);
+            while (keys[i] != 0) {
+                i = (i + 1) & mask;
+            }
 
-        for (int i = 0; i < mutualFollowsList.length; i++) {
-            mutualFollowsIds[i] = mutualFollowsList[i].getFirst();
+            keys[i] = node + 1;
+            values[i] = value;
+            if (++size * 2 > keys.length) {
+                resize();
+            }
         }
 
-        return mutualFollowsIds;
-    }
-
-    // get the users sorted by how many followers they have
-    public int[] getTopUsers() {
-        int[] topUsers = followerGraph.getIdArray();
-        quickSort(topUsers, 0, topUsers.length - 1);
+        // add one to the value of a node, which starts at zero
+        public void increment(int node) {
+            int mask = keys.length - 1;
+            int i = slot(node, mask);
 
-        return topUsers;
-    }
+            while (keys[i] != 0) {
+                if (keys[i] == node + 1) {
+                    values[i]++;
+                    return;
+                }
+                i = (i + 1) & mask;
+            }
 
-    // quicksort algorithm; taken and adapted from http://www.algolist.net/Algorithms/Sorting/Quicksort
-    private void quickSort(Pair<Integer, Date>[] list, int left, int right) {
-        int index = partition(list, left, right);
+            keys[i] = node + 1;
+            values[i] = 1;
+            if (++size * 2 > keys.length) {
+                resize();
+            }
+        }
 
-        if (left < index - 1) {
-            quickSort(list, left, index - 1);
+        // get the number of slots, some of which are empty
+        public int capacity() {
+            return keys.length;
         }
-        if (index < right) {
-            quickSort(list, index, right);
+
+        // get the node in the given slot, or -1 if the slot is empty
+        public int getNode(int slot) {
+            return keys[slot] - 1;
         }
-    }
 
-    private int partition(Pair<Integer, Date>[] list, int left, int right) {
-        int i = left, j = right;
-        Pair<Integer, Date> temp;
-        Pair<Integer, Date> pivot = list[(left + right) / 2];
+        // get the value in the given slot
+        public int getValue(int slot) {
+            return values[slot];
+        }
 
-        while (i <= j) {
-            while (list[i].getSecond().compareTo(pivot.getSecond()) > 0) {
-                i++;
-            }
-            while (list[j].getSecond().compareTo(pivot.getSecond()) < 0) {
-                j--;
-            }
-            if (i <= j) {
-                temp = list[i];
-                list[i++] = list[j];
-                list[j--] = temp;
+        // double the capacity of the table and re-insert all nodes
+        private void resize() {
+            int[] oldKeys = keys;
+            int[] oldValues = values;
+            int mask = oldKeys.length * 2 - 1;
+
+            keys = new int[oldKeys.length * 2];
+            values = new int[oldKeys.length * 2];
+            for (int j = 0; j < oldKeys.length; j++) {
+                if (oldKeys[j] != 0) {
+                    int i = slot(oldKeys[j] - 1, mask);
+                    while (keys[i] != 0) {
+                        i = (i + 1) & mask;
+                    }
+                    keys[i] = oldKeys[j];
+                    values[i] = oldValues[j];
+                }
             }
         }
-        return i;
     }
 
-    private void quickSort(int[] list, int left, int right) {
-        int index = partition(list, left, right);
-
-        if (left < index - 1) {
-            quickSort(list, left, index - 1);
+    /*
+     * Bounded heap keeping the k nodes with the highest scores offered to it, the node with the lowest score of them
+     * being at the root, so that a node only has to be compared with it to know whether it is one of the k best ones;
+     * offering n nodes takes O(n*logk) and only O(k) memory. For equal scores, nodes with smaller numbers come first.
+     */
+    class TopNodes {
+        private int[] nodes; // nodes in the heap
+        private int[] scores; // score of every node in the heap
+        private int size; // number of nodes in the heap
+
+        // initialise an empty heap that keeps at most k nodes
+        public TopNodes(int k) {
+            nodes = new int[k];
+            scores = new int[k];
+            size = 0;
         }
-        if (index < right) {
-            quickSort(list, index, right);
+
+        // check if the node at position i ranks below the node at position j
+        private boolean below(int i, int j) {
+            return scores[i] < scores[j] || (scores[i] == scores[j] && nodes[i] > nodes[j]);
         }
-    }
 
-    private int partition(int[] list, int left, int right) {
-        int i = left, j = right;
-        int temp;
-        int pivot = list[(left + right) / 2];
+        // offer a node with the given score, which is kept if it is one of the k best ones so far
+        public void offer(int node, int score) {
+            if (size < nodes.length) {
+                nodes[size] = node;
+                scores[size] = score;
+                siftUp(size++);
+            }
+            else if (size > 0 && (score > scores[0] || (score == scores[0] && node < nodes[0]))) {
+                nodes[0] = node;
+                scores[0] = score;
+                siftDown(0);
+            }
+        }
 
-        while (i <= j) {
-            while (list[i] > pivot) {
-                i++;
+        // move the node at position i up while it ranks below its parent
+        private void siftUp(int i) {
+            while (i > 0 && below(i, (i - 1) / 2)) {
+                swap(i, (i - 1) / 2);
+                i = (i - 1) / 2;
             }
-            while (list[j] < pivot) {
-                j--;
+        }
+
+        // move the node at position i down while one of its children ranks below it
+        private void siftDown(int i) {
+            while (2 * i + 1 < size) {
+                int child = 2 * i + 1;
+                if (child + 1 < size && below(child + 1, child)) {
+                    child++;
+                }
+                if (!below(child, i)) {
+                    return;
+                }
+                swap(i, child);
+                i = child;
             }
-            if (i <= j) {
-                temp = list[i];
-                list[i++] = list[j];
-                list[j--] = temp;
+        }
+
+        // swap the nodes at two positions of the heap
+        private void swap(int i, int j) {
+            int node = nodes[i], score = scores[i];
+
+            nodes[i] = nodes[j];
+            scores[i] = scores[j];
+            nodes[j] = node;
+            scores[j] = score;
+        }
+
+        // empty the heap, returning its nodes starting with the best one
+        public int[] removeAll() {
+            int[] sorted = new int[size];
+
+            for (int i = size - 1; i >= 0; i--) {
+                sorted[i] = nodes[0];
+                swap(0, --size);
+                siftDown(0);
+            }
+            return sorted;
+        }
+    }
+
+    /*
+     * Bidirectional breadth-first search for the shortest chain of follows from one node to another: the first node's
+     * follows are explored forwards through followGraph, and the second node's followers backwards through
+     * followerGraph, one level at a time, always on the side whose frontier is smaller, until a node reached from one
+     * side is reached from the other. Both sides only explore about half as deep as a one-sided search would, and
+     * since the number of nodes reached grows very quickly with depth, this usually looks at a tiny part of the graph.
+     * Visited nodes are kept in bitsets over the node numbers, and frontiers in int arrays; the node each node was
+     * reached from is only kept when the path itself is needed.
+     */
+    class PathSearch {
+        private long[] forwardVisited; // nodes reached from the first node
+        private long[] backwardVisited; // nodes reached from the second node
+        private NodeMap forwardParents; // node each node reached from the first node was reached from, if kept
+        private NodeMap backwardParents; // node each node reached from the second node was reached from, if kept
+        private int[] buffer; // relationships of the node being expanded
+        private long[] dateBuffer; // dates of those relationships, which aren't used
+        private int frontierSize; // number of nodes in the frontier returned by expand()
+        private int distance; // length of the shortest chain found, or -1
+        private int meeting; // node where the two sides met, or -1
+
+        // initialise a search, keeping the nodes that nodes are reached from if the path is needed
+        public PathSearch(boolean keepPath) {
+            forwardVisited = new long[(nodeIndex.size() + 63) / 64];
+            backwardVisited = new long[(nodeIndex.size() + 63) / 64];
+            if (keepPath) {
+                forwardParents = new NodeMap();
+                backwardParents = new NodeMap();
+            }
+            buffer = new int[16];
+            dateBuffer = new long[16];
+            distance = -1;
+            meeting = -1;
+        }
+
+        // check if a node is in a bitset
+        private boolean isSet(long[] bits, int node) {
+            return (bits[node >>> 6] & (1L << node)) != 0;
+        }
+
+        // add a node to a bitset
+        private void set(long[] bits, int node) {
+            bits[node >>> 6] |= 1L << node;
+        }
+
+        // search for a chain of at most maxDepth follows from node1 to node2, which must be different existing nodes
+        public void run(int node1, int node2, int maxDepth) {
+            int[] forward = { node1 };
+            int[] backward = { node2 };
+            int forwardSize = 1, backwardSize = 1;
+            int depth = 0;
+
+            set(forwardVisited, node1);
+            set(backwardVisited, node2);
+            while (depth < maxDepth && forwardSize > 0 && backwardSize > 0) {
+                depth++;
+                if (forwardSize <= backwardSize) {
+                    forward = expand(forward, forwardSize, followGraph, forwardVisited, backwardVisited, forwardParents);
+                    forwardSize = frontierSize;
+                }
+                else {
+                    backward = expand(backward, backwardSize, followerGraph, backwardVisited, forwardVisited,
+                        backwardParents);
+                    backwardSize = frontierSize;
+                }
+
+                if (meeting >= 0) {
+                    distance = depth;
+                    return;
+                }
+            }
+        }
+
+        /*
+         * visit every node related in the given graph to a node of the frontier that hasn't been visited by this side
+         * yet, returning them as the next frontier, and stop as soon as one of them has been visited by the other side
+         */
+        private int[] expand(int[] frontier, int size, Graph graph, long[] visited, long[] otherVisited, NodeMap parents) {
+            int[] next = new int[16];
+            frontierSize = 0;
+
+            for (int i = 0; i < size; i++) {
+                int node = frontier[i];
+                int count = graph.getCount(node);
+
+                if (count > buffer.length) {
+                    buffer = new int[count];
+                    dateBuffer = new long[count];
+                }
+                count = graph.getRelationships(node, 0, count, buffer, dateBuffer);
+
+                for (int j = 0; j < count; j++) {
+                    int related = buffer[j];
+                    if (isSet(visited, related)) {
+                        continue;
+                    }
+
+                    set(visited, related);
+                    if (parents != null) {
+                        parents.put(related, node);
+                    }
+                    if (isSet(otherVisited, related)) {
+                        meeting = related;
+                        return next;
+                    }
+
+                    if (frontierSize == next.length) {
+                        int[] newNext = new int[frontierSize * 2];
+                        System.arraycopy(next, 0, newNext, 0, frontierSize);
+                        next = newNext;
+                    }
+                    next[frontierSize++] = related;
+                }
+            }
+            return next;
+        }
+
+        // get the length of the shortest chain found, or -1 if there is none
+        public int getDistance() {
+            return distance;
+        }
+
+        // get the nodes of the shortest chain found, from the first node to the second, or null if there is none
+        public int[] getPath() {
+            if (meeting < 0) {
+                return null;
+            }
+
+            int[] path = new int[distance + 1];
+            int position = 0;
+
+            // walk back from the meeting node to the first node, then reverse that part
+            for (int node = meeting; node >= 0; node = forwardParents.get(node)) {
+                path[position++] = node;
+            }
+            for (int i = 0, j = position - 1; i < j; i++, j--) {
+                int node = path[i];
+                path[i] = path[j];
+                path[j] = node;
+            }
+
+            for (int node = backwardParents.get(meeting); node >= 0; node = backwardParents.get(node)) {
+                path[position++] = node;
+            }
+            return path;
+        }
+    }
+
+    /*
+     * Task computing, for the nodes from start to end - 1, the share of its influence that every node gives to each
+     * user it follows, and returning the total influence of the nodes that follow nobody, which is shared by all users
+     * instead. Ranges larger than INFLUENCE_TASK_SIZE are split in two, one half being run by another thread of the
+     * fork-join pool, so the nodes are shared between all cores.
+     */
+    class ContributionTask extends RecursiveTask<Double> {
+        private static final long serialVersionUID = 1L;
+
+        private final int[] followCounts; // number of users that every node follows
+        private final double[] ranks; // influence of every node
+        private final double[] contributions; // share of its influence that every node gives to each of its follows
+        private final int start; // first node of the range
+        private final int end; // node after the last one of the range
+
+        public ContributionTask(int[] followCounts, double[] ranks, double[] contributions, int start, int end) {
+            this.followCounts = followCounts;
+            this.ranks = ranks;
+            this.contributions = contributions;
+            this.start = start;
+            this.end = end;
+        }
+
+        protected Double compute() {
+            if (end - start > INFLUENCE_TASK_SIZE) {
+                int middle = (start + end) >>> 1;
+                ContributionTask left = new ContributionTask(followCounts, ranks, contributions, start, middle);
+
+                left.fork();
+                double right = new ContributionTask(followCounts, ranks, contributions, middle, end).compute();
+                return left.join() + right;
+            }
+
+            double dangling = 0;
+            for (int node = start; node < end; node++) {
+                if (followCounts[node] == 0) {
+                    contributions[node] = 0;
+                    dangling += ranks[node];
+                }
+                else {
+                    contributions[node] = ranks[node] / followCounts[node];
+                }
+            }
+            return dangling;
+        }
+    }
+
+    /*
+     * Task computing the new influence of the nodes from start to end - 1, each one being given the shares of all its
+     * followers, and returning the total change in their influence. Every node only writes its own influence, so the
+     * ranges can be run in parallel without locks, and they are split the same way as in ContributionTask.
+     */
+    class RankTask extends RecursiveTask<Double> {
+        private static final long serialVersionUID = 1L;
+
+        private final int[] offsets; // position of the first follower of every node in followers, and the total at the end
+        private final int[] followers; // followers of every node, from offsets[node] to offsets[node + 1] - 1
+        private final double[] contributions; // share of its influence that every node gives to each of its follows
+        private final double[] ranks; // influence of every node in the previous iteration
+        private final double[] newRanks; // influence of every node in this iteration
+        private final double base; // influence that every node is given, whoever follows it
+        private final int start; // first node of the range
+        private final int end; // node after the last one of the range
+
+        public RankTask(int[] offsets, int[] followers, double[] contributions, double[] ranks, double[] newRanks,
+                        double base, int start, int end) {
+            this.offsets = offsets;
+            this.followers = followers;
+            this.contributions = contributions;
+            this.ranks = ranks;
+            this.newRanks = newRanks;
+            this.base = base;
+            this.start = start;
+            this.end = end;
+        }
+
+        protected Double compute() {
+            if (end - start > INFLUENCE_TASK_SIZE) {
+                int middle = (start + end) >>> 1;
+                RankTask left = new RankTask(offsets, followers, contributions, ranks, newRanks, base, start, middle);
+
+                left.fork();
+                double right = new RankTask(offsets, followers, contributions, ranks, newRanks, base, middle, end).compute();
+                return left.join() + right;
+            }
+
+            double change = 0;
+            for (int node = start; node < end; node++) {
+                double shares = 0;
+                for (int i = offsets[node]; i < offsets[node + 1]; i++) {
+                    shares += contributions[followers[i]];
+                }
+                newRanks[node] = base + DAMPING * shares;
+                change += Math.abs(newRanks[node] - ranks[node]);
+            }
+            return change;
+        }
+    }
+
+    /*
+     * MinHash signature of the followers of a user: for each of SKETCH_SIZE hash functions, the smallest hash of any
+     * of the followers. Two users share a minimum for a given function with a probability equal to the Jaccard
+     * similarity of their sets of followers (the size of their intersection over the size of their union), so the
+     * fraction of minimums they share estimates it with a standard error of at most 1 / (2 * sqrt(SKETCH_SIZE)),
+     * whatever the number of followers, and comparing two signatures takes O(SKETCH_SIZE). Removed followers can't
+     * be taken out of the minimums, so they are only counted, and the signature is built again once there are too
+     * many of them.
+     */
+    class MinHashSketch {
+        private int[] minimums; // smallest hash of any follower, for every hash function
+        private int removed; // number of followers removed since the signature was built
+
+        // initialise an empty signature
+        public MinHashSketch() {
+            minimums = new int[SKETCH_SIZE];
+            for (int i = 0; i < SKETCH_SIZE; i++) {
+                minimums[i] = Integer.MAX_VALUE;
+            }
+            removed = 0;
+        }
+
+        // add a follower to the signature
+        public void add(int node) {
+            // mix the bits of the node number, then derive each hash from it with a multiply-shift hash function
+            long hash = node * 0x9E3779B97F4A7C15L;
+            hash = (hash ^ (hash >>> 32)) * 0xD6E8FEB86659FD93L;
+            hash ^= hash >>> 32;
+
+            for (int i = 0; i < SKETCH_SIZE; i++) {
+                int value = (int) ((hash * sketchMultipliers[i] + sketchIncrements[i]) >>> 33);
+                if (value < minimums[i]) {
+                    minimums[i] = value;
+                }
+            }
+        }
+
+        // record that a follower was removed
+        public void remove() {
+            removed++;
+        }
+
+        // check if so many followers were removed, compared to the given number of followers, that it must be rebuilt
+        public boolean isStale(int count) {
+            return removed * 8 > count;
+        }
+
+        // estimate the Jaccard similarity of the followers of this signature and another one
+        public double estimateJaccard(MinHashSketch other) {
+            int equal = 0;
+
+            for (int i = 0; i < SKETCH_SIZE; i++) {
+                if (minimums[i] == other.minimums[i]) {
+                    equal++;
+                }
+            }
+            return (double) equal / SKETCH_SIZE;
+        }
+    }
+
+    NodeIndex nodeIndex; // node number of every user, shared by both graphs
+    Graph followerGraph; // directed graph whose edges point from users to their followers
+    Graph followGraph; // directed graph whose edges point from users to those they follow
+    FollowerRanking followerRanking; // users sorted by number of followers
+    volatile int[] influenceRanking; // nodes sorted by influence when computeInfluence() was last called, or null
+    MinHashSketch[] followerSketches; // signature of the followers of every node with many followers, or null
+    long[] sketchMultipliers; // multiplier of every hash function of the signatures
+    long[] sketchIncrements; // increment of every hash function of the signatures
+    Lock readLock; // held while reading the store, by any number of threads at once
+    Lock writeLock; // held while changing the store, by one thread at a time and while nobody reads it
+
+    // number of relationships from which a node of a graph also keeps the nodes it is related to in a NodeSet
+    private static final int ADJACENCY_SET_THRESHOLD = 16;
+
+    // number of relationships the delta of a graph can hold before being merged, however few relationships there are
+    private static final int MIN_DELTA_SIZE = 1024;
+
+    // node that a removed relationship in the CSR arrays of a graph points to
+    private static final int REMOVED = -1;
+
+    // probability that a user reading Witter goes on to a user followed by the current one, instead of any other user
+    private static final double DAMPING = 0.85;
+
+    // maximum number of iterations computeInfluence() runs when no number is given
+    private static final int DEFAULT_INFLUENCE_ITERATIONS = 50;
+
+    // total change in influence over all users below which computeInfluence() stops early
+    private static final double INFLUENCE_TOLERANCE = 1e-9;
+
+    // number of nodes below which the influence tasks aren't split any further
+    private static final int INFLUENCE_TASK_SIZE = 4096;
+
+    // number of periods getFollowerGrowth() can count the followers of at once
+    private static final int MAX_GROWTH_BUCKETS = 100000;
+
+    // number of hash functions of the follower signatures
+    private static final int SKETCH_SIZE = 128;
+
+    // number of followers from which a user's followers are also kept in a signature; users with fewer followers are
+    // compared exactly, which doesn't take longer than comparing signatures
+    private static final int SKETCH_THRESHOLD = 256;
+
+    // number of the most recent follows of a user that are used to recommend users to them
+    private static final int RECOMMEND_SOURCE_LIMIT = 1000;
+
+    // number of the most recent follows of each of those users that are counted, so that users who follow very many
+    // others don't make recommending slow
+    private static final int RECOMMEND_FAN_OUT = 1000;
+
+    // initialise the node index and the two graphs
+    public FollowerStore() {
+        nodeIndex = new NodeIndex();
+        followerGraph = new Graph();
+        followGraph = new Graph();
+        followerRanking = new FollowerRanking();
+        followerSketches = new MinHashSketch[8];
+        ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+        readLock = lock.readLock();
+        writeLock = lock.writeLock();
+
+        // the hash functions are drawn from a fixed sequence, so that estimates don't change from one run to another
+        sketchMultipliers = new long[SKETCH_SIZE];
+        sketchIncrements = new long[SKETCH_SIZE];
+        long seed = 126;
+        for (int i = 0; i < SKETCH_SIZE; i++) {
+            seed = seed * 6364136223846793005L + 1442695040888963407L;
+            sketchMultipliers[i] = seed | 1;
+            seed = seed * 6364136223846793005L + 1442695040888963407L;
+            sketchIncrements[i] = seed;
+        }
+    }
+
+    /*
+     * update the ranking and the signature of a node that gained the follower followerNode, building the signature
+     * once the node has SKETCH_THRESHOLD followers
+     */
+    private void followerAdded(int node, int followerNode) {
+        int count = followerGraph.getCount(node);
+
+        followerRanking.increment(node, count);
+        if (node < followerSketches.length && followerSketches[node] != null) {
+            followerSketches[node].add(followerNode);
+        }
+        else if (count >= SKETCH_THRESHOLD) {
+            buildSketch(node);
+        }
+    }
+
+    /*
+     * update the ranking and the signature of a node that lost a follower; a node that now has too few followers is
+     * compared exactly again, and the signature is built again once too many followers were removed from it
+     */
+    private void followerRemoved(int node) {
+        int count = followerGraph.getCount(node);
+
+        followerRanking.decrement(node, count);
+        if (node < followerSketches.length && followerSketches[node] != null) {
+            followerSketches[node].remove();
+            if (count < SKETCH_THRESHOLD) {
+                followerSketches[node] = null;
+            }
+            else if (followerSketches[node].isStale(count)) {
+                buildSketch(node);
+            }
+        }
+    }
+
+    // build the signature of a node from all its current followers
+    private void buildSketch(int node) {
+        if (node >= followerSketches.length) {
+            MinHashSketch[] newSketches = new MinHashSketch[Math.max(followerSketches.length * 2, node + 1)];
+            System.arraycopy(followerSketches, 0, newSketches, 0, followerSketches.length);
+            followerSketches = newSketches;
+        }
+
+        int[] followers = new int[followerGraph.getCount(node)];
+        int count = followerGraph.getRelationships(node, 0, followers.length, followers, new long[followers.length]);
+        MinHashSketch sketch = new MinHashSketch();
+        for (int i = 0; i < count; i++) {
+            sketch.add(followers[i]);
+        }
+        followerSketches[node] = sketch;
+    }
+
+    // get the signature of a node's followers, or null if the node has too few followers to have one
+    private MinHashSketch getSketch(int node) {
+        if (node < 0 || node >= followerSketches.length) {
+            return null;
+        }
+        return followerSketches[node];
+    }
+
+    /*
+     * release the write lock, first sorting the relationships that were added out of date order, so that reading the
+     * store never changes it and many threads can read it at once
+     */
+    private void unlockWrite() {
+        followGraph.sortDeltas();
+        followerGraph.sortDeltas();
+        writeLock.unlock();
+    }
+
+    // add user with ID uid2 as a follower to user with ID uid1
+    public boolean addFollower(int uid1, int uid2, Date followDate) {
+        writeLock.lock();
+        try {
+            // prevent crash if date is null
+            if (followDate == null) {
+                return false;
+            }
+
+            boolean status = false;
+            int node1 = nodeIndex.addNode(uid1);
+            int node2 = nodeIndex.addNode(uid2);
+
+            // if there is no relationship between the two, add one
+            if (!followGraph.contains(node1, node2)) {
+                followGraph.addRelationship(node1, node2, followDate.getTime());
+                // do the same for the other graph
+                followerGraph.addRelationship(node2, node1, followDate.getTime());
+                followerAdded(node2, node1);
+                status = true;
+            }
+
+            return status;
+        }
+        finally {
+            unlockWrite();
+        }
+    }
+
+    /*
+     * remove the relationship added by addFollower(uid1, uid2), where the user with ID uid1 follows the user with ID
+     * uid2, and return whether there was one; both graphs and the ranking of the users are updated, without rebuilding
+     * anything, so the other methods see the change straight away
+     */
+    public boolean removeFollower(int uid1, int uid2) {
+        writeLock.lock();
+        try {
+            int node1 = nodeIndex.getNode(uid1);
+            int node2 = nodeIndex.getNode(uid2);
+
+            if (!followGraph.removeRelationship(node1, node2)) {
+                return false;
+            }
+            followerGraph.removeRelationship(node2, node1);
+            followerRemoved(node2);
+
+            return true;
+        }
+        finally {
+            unlockWrite();
+        }
+    }
+
+    /*
+     * Add many relationships at once, where uid1s[i] follows uid2s[i] since followDates[i], as if addFollower() was
+     * called for each of them in order, and return the number of relationships added. The relationships are sorted
+     * once by user, so that each user's node is looked up only once in each graph, and so that duplicates within the
+     * batch are next to each other.
+     */
+    public int addFollowers(int[] uid1s, int[] uid2s, Date[] followDates) {
+        writeLock.lock();
+        try {
+            // prevent crash if the arrays don't describe the same relationships
+            if (uid1s == null || uid2s == null || followDates == null
+                    || uid1s.length != uid2s.length || uid1s.length != followDates.length) {
+                return 0;
+            }
+
+            int[] order = new int[uid1s.length];
+            boolean[] accepted = new boolean[uid1s.length];
+            int count = 0;
+            int added = 0;
+
+            // sort the relationships by uid1, then uid2, keeping the given order for duplicates so that the first one is added
+            for (int i = 0; i < uid1s.length; i++) {
+                // skip relationships without a date, which addFollower() would refuse
+                if (followDates[i] != null) {
+                    order[count++] = i;
+                }
+            }
+            sortIndices(order, count, uid1s, uid2s);
+
+            for (int start = 0; start < count; ) {
+                int uid = uid1s[order[start]];
+                int end = start;
+                while (end < count && uid1s[order[end]] == uid) {
+                    end++;
+                }
+
+                int node = nodeIndex.addNode(uid);
+
+                for (int i = start; i < end; i++) {
+                    int follows = uid2s[order[i]];
+                    int followsNode = nodeIndex.addNode(follows);
+                    boolean duplicate = i > start && uid2s[order[i - 1]] == follows;
+
+                    if (!duplicate && !followGraph.contains(node, followsNode)) {
+                        followGraph.addRelationship(node, followsNode, followDates[order[i]].getTime());
+                        accepted[order[i]] = true;
+                        added++;
+                    }
+                }
+                start = end;
+            }
+
+            // add the accepted relationships to followerGraph, grouped by uid2
+            int acceptedCount = 0;
+            for (int i = 0; i < uid1s.length; i++) {
+                if (accepted[i]) {
+                    order[acceptedCount++] = i;
+                }
+            }
+            sortIndices(order, acceptedCount, uid2s, uid1s);
+
+            int node = -1;
+            for (int i = 0; i < acceptedCount; i++) {
+                int uid = uid2s[order[i]];
+
+                if (i == 0 || uid2s[order[i - 1]] != uid) {
+                    node = nodeIndex.addNode(uid);
+                }
+                int followerNode = nodeIndex.getNode(uid1s[order[i]]);
+                followerGraph.addRelationship(node, followerNode, followDates[order[i]].getTime());
+                followerAdded(node, followerNode);
+            }
+
+            return added;
+        }
+        finally {
+            unlockWrite();
+        }
+    }
+
+    /*
+     * Sort the positions from start to end - 1 of order, which hold indices into the given key array, by key; short
+     * ranges, which most nodes have, are sorted by insertion, and longer ones with sortIndices()
+     */
+    private void sortIndices(int[] order, int start, int end, int[] keys) {
+        if (end - start <= 32) {
+            for (int i = start + 1; i < end; i++) {
+                int index = order[i];
+                int j = i - 1;
+                while (j >= start && keys[order[j]] > keys[index]) {
+                    order[j + 1] = order[j];
+                    j--;
+                }
+                order[j + 1] = index;
+            }
+            return;
+        }
+
+        int[] range = new int[end - start];
+        System.arraycopy(order, start, range, 0, range.length);
+        sortIndices(range, range.length, keys, keys);
+        System.arraycopy(range, 0, order, start, range.length);
+    }
+
+    /*
+     * Sort the first count positions of order, which hold indices into the given key arrays, by first key and then by
+     * second key, using merge sort; it is stable, so indices with equal keys stay in the same order
+     */
+    private void sortIndices(int[] order, int count, int[] firstKeys, int[] secondKeys) {
+        int[] buffer = new int[count];
+
+        for (int width = 1; width < count; width *= 2) {
+            for (int left = 0; left < count - width; left += 2 * width) {
+                int middle = left + width;
+                int right = middle + width < count ? middle + width : count;
+                int i = left, j = middle, k = left;
+
+                while (i < middle && j < right) {
+                    int a = order[i], b = order[j];
+                    if (firstKeys[b] < firstKeys[a] || (firstKeys[b] == firstKeys[a] && secondKeys[b] < secondKeys[a])) {
+                        buffer[k++] = order[j++];
+                    }
+                    else {
+                        buffer[k++] = order[i++];
+                    }
+                }
+                while (i < middle) {
+                    buffer[k++] = order[i++];
+                }
+                while (j < right) {
+                    buffer[k++] = order[j++];
+                }
+                System.arraycopy(buffer, left, order, left, right - left);
+            }
+        }
+    }
+
+    // return a list of all the followers of the user with ID uid
+    public int[] getFollowers(int uid) {
+        readLock.lock();
+        try {
+            return getRelatedIds(followerGraph, nodeIndex.getNode(uid));
+        }
+        finally {
+            readLock.unlock();
+        }
+    }
+
+    /*
+     * return at most limit followers of the user with ID uid, starting with the most recent one but skipping the first
+     * offset ones, or null if the user has no followers; the followers are kept in date order, so a page only takes
+     * time proportional to its size, wherever it is
+     */
+    public int[] getFollowers(int uid, int offset, int limit) {
+        readLock.lock();
+        try {
+            int node = nodeIndex.getNode(uid);
+            int[] nullCase = {}; // value to return in case the page is empty
+
+            if (followerGraph.getCount(node) == 0) {
+                return null;
+            }
+            if (offset < 0 || limit <= 0 || offset >= followerGraph.getCount(node)) {
+                return nullCase;
+            }
+
+            int[] nodes = new int[Math.min(limit, followerGraph.getCount(node) - offset)];
+            int count = followerGraph.getRelationships(node, offset, nodes.length, nodes, new long[nodes.length]);
+            return toIds(nodes, count);
+        }
+        finally {
+            readLock.unlock();
+        }
+    }
+
+    /*
+     * return the followers of the user with ID uid who followed them from one date to another (both inclusive), starting
+     * with the most recent one, or null if there are none; see Graph.getRelationshipsBetween()
+     */
+    public int[] getFollowersBetween(int uid, Date from, Date to) {
+        readLock.lock();
+        try {
+            // prevent crash if a date is null
+            if (from == null || to == null) {
+                return null;
+            }
+
+            int node = nodeIndex.getNode(uid);
+            int count = followerGraph.countBetween(node, from.getTime(), to.getTime());
+            if (count == 0) {
+                return null;
+            }
+
+            int[] nodes = new int[count];
+            followerGraph.getRelationshipsBetween(node, from.getTime(), to.getTime(), nodes, new long[count]);
+            return toIds(nodes, count);
+        }
+        finally {
+            readLock.unlock();
+        }
+    }
+
+    // count the followers the user with ID uid gained from one date to another (both inclusive), without listing them
+    public int countFollowersGainedBetween(int uid, Date from, Date to) {
+        readLock.lock();
+        try {
+            // prevent crash if a date is null
+            if (from == null || to == null) {
+                return 0;
+            }
+            return followerGraph.countBetween(nodeIndex.getNode(uid), from.getTime(), to.getTime());
+        }
+        finally {
+            readLock.unlock();
+        }
+    }
+
+    /*
+     * return the number of followers the user with ID uid gained in each period of bucket milliseconds from one date to
+     * another: element i counts those from from + i * bucket to from + (i + 1) * bucket - 1, and the last period ends
+     * at to (all inclusive). Only followers the user still has are counted. Returns null if the dates or the length of
+     * the periods are invalid, or if there would be more than MAX_GROWTH_BUCKETS periods.
+     */
+    public int[] getFollowerGrowth(int uid, Date from, Date to, long bucket) {
+        readLock.lock();
+        try {
+            // prevent crash if a date is null, or if the periods can't be counted
+            if (from == null || to == null || bucket <= 0 || from.getTime() > to.getTime()) {
+                return null;
+            }
+            // the span between dates far apart doesn't fit in a long, but always fits in one read as unsigned
+            long span = to.getTime() - from.getTime();
+            long periods = Long.divideUnsigned(span, bucket);
+            if (Long.compareUnsigned(periods, MAX_GROWTH_BUCKETS) >= 0) {
+                return null;
+            }
+
+            int node = nodeIndex.getNode(uid);
+            int[] growth = new int[(int) periods + 1];
+            for (int i = 0; i < growth.length; i++) {
+                // every period starts by to, so only its end has to be kept from going past it
+                long start = from.getTime() + i * bucket;
+                long end = Long.compareUnsigned(to.getTime() - start, bucket) < 0 ? to.getTime() : start + bucket - 1;
+                growth[i] = followerGraph.countBetween(node, start, end);
+            }
+            return growth;
+        }
+        finally {
+            readLock.unlock();
+        }
+    }
+
+    /*
+     * return the number of times the user with ID uid followed or stopped following someone so far; anything worked
+     * out from the users someone follows, such as a cached home timeline, is out of date once this number changes
+     */
+    public int getFollowsVersion(int uid) {
+        readLock.lock();
+        try {
+            return followGraph.getChanges(nodeIndex.getNode(uid));
+        }
+        finally {
+            readLock.unlock();
+        }
+    }
+
+    // return a list of all those followed by the user with ID uid
+    public int[] getFollows(int uid) {
+        readLock.lock();
+        try {
+            return getRelatedIds(followGraph, nodeIndex.getNode(uid));
+        }
+        finally {
+            readLock.unlock();
+        }
+    }
+
+    /*
+     * return the IDs of the users a node is related to in the given graph, starting with the most recent relationship,
+     * or null if the node doesn't exist or has no relationships in this graph
+     */
+    private int[] getRelatedIds(Graph graph, int node) {
+        int count = graph.getCount(node);
+
+        if (count == 0) {
+            return null;
+        }
+
+        int[] nodes = new int[count];
+        long[] dates = new long[count];
+
+        graph.getRelationships(node, nodes, dates);
+        return toIds(nodes, count);
+    }
+
+    // return the user IDs of the first count nodes of the given array
+    private int[] toIds(int[] nodes, int count) {
+        int[] idArray = new int[count];
+
+        for (int i = 0; i < count; i++) {
+            idArray[i] = nodeIndex.getId(nodes[i]);
+        }
+        return idArray;
+    }
+
+    // check if a user is the follower of the other
+    public boolean isAFollower(int uidFollower, int uidFollows) {
+        readLock.lock();
+        try {
+            return followerGraph.contains(nodeIndex.getNode(uidFollows), nodeIndex.getNode(uidFollower));
+        }
+        finally {
+            readLock.unlock();
+        }
+    }
+
+    // get the number of followers of a given user
+    public int getNumFollowers(int uid) {
+        readLock.lock();
+        try {
+            return followerGraph.getCount(nodeIndex.getNode(uid));
+        }
+        finally {
+            readLock.unlock();
+        }
+    }
+
+    // get the mutual followers of the two users provided
+    public int[] getMutualFollowers(int uid1, int uid2) {
+        readLock.lock();
+        try {
+            return getMutualIds(followerGraph, nodeIndex.getNode(uid1), nodeIndex.getNode(uid2));
+        }
+        finally {
+            readLock.unlock();
+        }
+    }
+
+    // get the mutual follows of the two users provided
+    public int[] getMutualFollows(int uid1, int uid2) {
+        readLock.lock();
+        try {
+            return getMutualIds(followGraph, nodeIndex.getNode(uid1), nodeIndex.getNode(uid2));
+        }
+        finally {
+            readLock.unlock();
+        }
+    }
+
+    /*
+     * return the IDs of the users both nodes are related to in the given graph, sorted by the most recent of the two
+     * relationships, starting with the most recent one, or null if there are none
+     */
+    private int[] getMutualIds(Graph graph, int node1, int node2) {
+        int count1 = graph.getCount(node1), count2 = graph.getCount(node2);
+
+        if (count1 == 0 || count2 == 0) {
+            return null;
+        }
+
+        int[] nodes = new int[Math.min(count1, count2)];
+        long[] dates = new long[nodes.length];
+        int count = graph.getMutualRelationships(node1, node2, nodes, dates);
+
+        if (count == 0) {
+            return null;
+        }
+
+        sortByKeyDescending(nodes, dates, count);
+        return toIds(nodes, count);
+    }
+
+    /*
+     * estimate the Jaccard similarity of the followers of the two users provided: the number of their mutual followers
+     * over the number of users following either of them. If both have at least SKETCH_THRESHOLD followers, this is
+     * estimated from their signatures in O(SKETCH_SIZE), with a standard error of at most 0.045; otherwise, their
+     * followers are few enough to be compared exactly.
+     */
+    public double estimateJaccard(int uid1, int uid2) {
+        readLock.lock();
+        try {
+            int node1 = nodeIndex.getNode(uid1), node2 = nodeIndex.getNode(uid2);
+            int count1 = followerGraph.getCount(node1), count2 = followerGraph.getCount(node2);
+            MinHashSketch sketch1 = getSketch(node1), sketch2 = getSketch(node2);
+
+            if (count1 == 0 || count2 == 0) {
+                return 0;
+            }
+            if (sketch1 != null && sketch2 != null) {
+                return sketch1.estimateJaccard(sketch2);
+            }
+
+            int mutual = countMutualFollowers(node1, node2);
+            return (double) mutual / (count1 + count2 - mutual);
+        }
+        finally {
+            readLock.unlock();
+        }
+    }
+
+    /*
+     * estimate the number of mutual followers of the two users provided, in O(SKETCH_SIZE) if both have at least
+     * SKETCH_THRESHOLD followers, or exactly otherwise. Since the numbers of followers a and b of the two users are
+     * known exactly, the number of mutual followers follows from the Jaccard similarity j: it is j * (a + b) / (1 + j).
+     */
+    public int estimateMutualFollowerCount(int uid1, int uid2) {
+        readLock.lock();
+        try {
+            int node1 = nodeIndex.getNode(uid1), node2 = nodeIndex.getNode(uid2);
+            int count1 = followerGraph.getCount(node1), count2 = followerGraph.getCount(node2);
+            MinHashSketch sketch1 = getSketch(node1), sketch2 = getSketch(node2);
+
+            if (count1 == 0 || count2 == 0) {
+                return 0;
+            }
+            if (sketch1 == null || sketch2 == null) {
+                return countMutualFollowers(node1, node2);
+            }
+
+            double jaccard = sketch1.estimateJaccard(sketch2);
+            long estimate = Math.round(jaccard * (count1 + count2) / (1 + jaccard));
+            return (int) Math.min(estimate, Math.min(count1, count2));
+        }
+        finally {
+            readLock.unlock();
+        }
+    }
+
+    // count the mutual followers of two nodes exactly
+    private int countMutualFollowers(int node1, int node2) {
+        int[] nodes = new int[Math.min(followerGraph.getCount(node1), followerGraph.getCount(node2))];
+        return followerGraph.getMutualRelationships(node1, node2, nodes, new long[nodes.length]);
+    }
+
+    /*
+     * get the users sorted by how many followers they have; getTopUsers(k) never returns more users than are ranked,
+     * so the size of the ranking doesn't have to be read outside the lock
+     */
+    public int[] getTopUsers() {
+        return getTopUsers(Integer.MAX_VALUE);
+    }
+
+    /*
+     * get the k users with the most followers, sorted by how many followers they have, or null if no user has
+     * followers; the ranking is kept up to date as followers are added, so this only copies the first k users
+     */
+    public int[] getTopUsers(int k) {
+        readLock.lock();
+        try {
+            int[] nullCase = {}; // value to return in case no users are asked for
+
+            if (followerRanking.size() == 0) {
+                return null;
+            }
+            if (k <= 0) {
+                return nullCase;
+            }
+
+            int[] topUsers = new int[Math.min(k, followerRanking.size())];
+            for (int i = 0; i < topUsers.length; i++) {
+                topUsers[i] = nodeIndex.getId(followerRanking.get(i));
+            }
+            return topUsers;
+        }
+        finally {
+            readLock.unlock();
+        }
+    }
+
+    /*
+     * Compute the influence of every user with PageRank, running at most DEFAULT_INFLUENCE_ITERATIONS iterations;
+     * see computeInfluence(int)
+     */
+    public int computeInfluence() {
+        return computeInfluence(DEFAULT_INFLUENCE_ITERATIONS);
+    }
+
+    /*
+     * Compute the influence of every user with PageRank over followerGraph, so that a user is influential if they are
+     * followed by influential users rather than just by many users, which bot accounts can't easily fake. Every
+     * iteration, each user shares DAMPING of their influence equally between the users they follow, and the rest is
+     * shared between all users. This stops after the given number of iterations, or earlier once the influence stops
+     * changing, and returns the number of iterations run. Every iteration takes O(n + m) for n users and m
+     * relationships, split between all cores with fork-join tasks; the users are then sorted by influence for
+     * getTopUsersByInfluence(). The followers of every user are copied out of followerGraph under the lock, which is
+     * then released, so the store can be read and changed while the iterations run; relationships added or removed
+     * later are only taken into account by the next call.
+     */
+    public int computeInfluence(int iterations) {
+        int n;
+        int[] offsets;
+        int[] followers;
+
+        // merge the delta first, so that the relationships can be copied straight from the CSR arrays
+        writeLock.lock();
+        try {
+            followerGraph.compact();
+            n = nodeIndex.size();
+            offsets = followerGraph.copyOffsets(n);
+            followers = followerGraph.copyTargets();
+        }
+        finally {
+            unlockWrite();
+        }
+
+        return rankByInfluence(n, offsets, followers, iterations);
+    }
+
+    /*
+     * run computeInfluence() over the copied followers of nodes 0 to n - 1, without holding the lock, and publish the
+     * ranking once it is sorted
+     */
+    private int rankByInfluence(int n, int[] offsets, int[] followers, int iterations) {
+        int[] followCounts = new int[n];
+        double[] ranks = new double[n];
+        double[] newRanks = new double[n];
+        double[] contributions = new double[n];
+        int iteration = 0;
+
+        for (int node = 0; node < n; node++) {
+            ranks[node] = 1.0 / n;
+        }
+        // every user is in the list of followers of each user they follow
+        for (int i = 0; i < offsets[n]; i++) {
+            followCounts[followers[i]]++;
+        }
+
+        while (iteration < iterations && n > 0) {
+            double dangling = new ContributionTask(followCounts, ranks, contributions, 0, n).invoke();
+            double base = (1 - DAMPING) / n + DAMPING * dangling / n;
+            double change = new RankTask(offsets, followers, contributions, ranks, newRanks, base, 0, n).invoke();
+
+            double[] oldRanks = ranks;
+            ranks = newRanks;
+            newRanks = oldRanks;
+            iteration++;
+            if (change < INFLUENCE_TOLERANCE) {
+                break;
+            }
+        }
+
+        // influence is never negative, so the bits of the doubles sort in the same order as them
+        int[] nodes = new int[n];
+        long[] keys = new long[n];
+        for (int node = 0; node < n; node++) {
+            nodes[node] = node;
+            keys[node] = Double.doubleToLongBits(ranks[node]);
+        }
+        sortByKeyDescending(nodes, keys, n);
+        influenceRanking = nodes;
+
+        return iteration;
+    }
+
+    /*
+     * get the k most influential users, starting with the most influential one, as computed by the last call to
+     * computeInfluence(), or null if it hasn't been called or there were no users then
+     */
+    public int[] getTopUsersByInfluence(int k) {
+        readLock.lock();
+        try {
+            int[] nullCase = {}; // value to return in case no users are asked for
+
+            if (influenceRanking == null || influenceRanking.length == 0) {
+                return null;
+            }
+            if (k <= 0) {
+                return nullCase;
+            }
+
+            return toIds(influenceRanking, Math.min(k, influenceRanking.length));
+        }
+        finally {
+            readLock.unlock();
+        }
+    }
+
+    /*
+     * Recommend at most k users for the user with ID uid to follow, starting with those followed by the most users
+     * that the user follows, and leaving out the user and those they already follow; return null if there are none.
+     * Only the RECOMMEND_SOURCE_LIMIT most recent follows of the user, and the RECOMMEND_FAN_OUT most recent follows of
+     * each of them, are counted, so this takes O(RECOMMEND_SOURCE_LIMIT * RECOMMEND_FAN_OUT) at most, however large
+     * the graph is; the counters are kept in a primitive hash map, and the best users in a heap of size k.
+     */
+    public int[] recommend(int uid, int k) {
+        readLock.lock();
+        try {
+            int node = nodeIndex.getNode(uid);
+            int[] nullCase = {}; // value to return in case no users are asked for
+
+            if (followGraph.getCount(node) == 0) {
+                return null;
+            }
+            if (k <= 0) {
+                return nullCase;
+            }
+
+            int[] follows = new int[Math.min(followGraph.getCount(node), RECOMMEND_SOURCE_LIMIT)];
+            int followCount = followGraph.getRelationships(node, 0, follows.length, follows, new long[follows.length]);
+            int[] secondFollows = new int[RECOMMEND_FAN_OUT];
+            long[] secondDates = new long[RECOMMEND_FAN_OUT];
+            NodeMap counter = new NodeMap();
+
+            // count how many of the users followed by the user follow every other user
+            for (int i = 0; i < followCount; i++) {
+                int count = followGraph.getRelationships(follows[i], 0, RECOMMEND_FAN_OUT, secondFollows, secondDates);
+                for (int j = 0; j < count; j++) {
+                    counter.increment(secondFollows[j]);
+                }
+            }
+
+            TopNodes top = new TopNodes(k);
+            for (int slot = 0; slot < counter.capacity(); slot++) {
+                int candidate = counter.getNode(slot);
+                if (candidate >= 0 && candidate != node && !followGraph.contains(node, candidate)) {
+                    top.offer(candidate, counter.getValue(slot));
+                }
+            }
+
+            int[] nodes = top.removeAll();
+            if (nodes.length == 0) {
+                return null;
+            }
+            return toIds(nodes, nodes.length);
+        }
+        finally {
+            readLock.unlock();
+        }
+    }
+
+    /*
+     * get the length of the shortest chain of follows from the user with ID uidA to the user with ID uidB, where each
+     * user follows the next one, or -1 if there is no such chain of at most maxDepth follows; see PathSearch
+     */
+    public int distance(int uidA, int uidB, int maxDepth) {
+        readLock.lock();
+        try {
+            int nodeA = nodeIndex.getNode(uidA);
+            int nodeB = nodeIndex.getNode(uidB);
+
+            // users who have never followed or been followed are unknown, so not even connected to themselves
+            if (nodeA < 0 || nodeB < 0) {
+                return -1;
+            }
+            if (uidA == uidB) {
+                return 0;
+            }
+            if (maxDepth <= 0) {
+                return -1;
+            }
+
+            PathSearch search = new PathSearch(false);
+            search.run(nodeA, nodeB, maxDepth);
+            return search.getDistance();
+        }
+        finally {
+            readLock.unlock();
+        }
+    }
+
+    /*
+     * get the IDs of the users on the shortest chain of follows from the user with ID uidA to the user with ID uidB,
+     * starting with uidA and ending with uidB, or null if there is no such chain of at most maxDepth follows
+     */
+    public int[] shortestPath(int uidA, int uidB, int maxDepth) {
+        readLock.lock();
+        try {
+            int nodeA = nodeIndex.getNode(uidA);
+            int nodeB = nodeIndex.getNode(uidB);
+
+            // users who have never followed or been followed are unknown, so not even connected to themselves
+            if (nodeA < 0 || nodeB < 0) {
+                return null;
+            }
+            if (uidA == uidB) {
+                return new int[] { uidA };
+            }
+            if (maxDepth <= 0) {
+                return null;
+            }
+
+            PathSearch search = new PathSearch(true);
+            search.run(nodeA, nodeB, maxDepth);
+
+            int[] path = search.getPath();
+            if (path == null) {
+                return null;
+            }
+            return toIds(path, path.length);
+        }
+        finally {
+            readLock.unlock();
+        }
+    }
+
+    /*
+     * Sort the first count nodes of the given array by their keys, which are sorted along with them, starting with the
+     * largest one, using merge sort; it is stable, so equal keys stay in the same order. Used with relationship dates,
+     * to put the most recent first, and with the bits of influence scores.
+     */
+    private void sortByKeyDescending(int[] nodes, long[] keys, int count) {
+        int[] nodeBuffer = new int[count];
+        long[] keyBuffer = new long[count];
+
+        for (int width = 1; width < count; width *= 2) {
+            for (int left = 0; left < count - width; left += 2 * width) {
+                int middle = left + width;
+                int right = middle + width < count ? middle + width : count;
+                int i = left, j = middle, k = left;
+
+                while (i < middle && j < right) {
+                    if (keys[j] > keys[i]) {
+                        nodeBuffer[k] = nodes[j];
+                        keyBuffer[k++] = keys[j++];
+                    }
+                    else {
+                        nodeBuffer[k] = nodes[i];
+                        keyBuffer[k++] = keys[i++];
+                    }
+                }
+                while (i < middle) {
+                    nodeBuffer[k] = nodes[i];
+                    keyBuffer[k++] = keys[i++];
+                }
+                while (j < right) {
+                    nodeBuffer[k] = nodes[j];
+                    keyBuffer[k++] = keys[j++];
+                }
+                System.arraycopy(nodeBuffer, left, nodes, left, right - left);
+                System.arraycopy(keyBuffer, left, keys, left, right - left);
             }
         }
-        return i;
     }
 }
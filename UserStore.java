@@ -1,33 +1,40 @@
 /**
- * UserStore is implemented using two red black binary search trees (BST), both of them storing users but in
- * different orders. The first tree orders users by their IDs, and it is used for the getUser() method,
- * which is called whenever adding a new user in order to check whether a specific ID is already in use. The second
- * tree stores users ordered by their join date, and is used in all the other UserStore methods, since it
- * allows users to be easily retrieved sorted by date, providing a good time complexity for these operations.
+ * UserStore is implemented using a hash table and a red black binary search tree (BST), both of them storing users.
+ * The hash table is keyed by user ID, and it is used for the getUser() method, which is called whenever adding a new
+ * user in order to check whether a specific ID is already in use. The tree stores users ordered by their join date,
+ * and is used in all the other UserStore methods, since it allows users to be easily retrieved sorted by date,
+ * providing a good time complexity for these operations.
  *
- * The memory complexity is O(n). More precisely, each BST has O(n) memory complexity, so 2n memory is used.
+ * The memory complexity is O(n). More precisely, both the hash table and the BST have O(n) memory complexity.
  *
- * The time complexity for addUser() is O(logn), since it is O(logn) for each BST.
- * The time complexity for getUser() is O(logn) as well, due to the fact that users are searched for in the first BST by ID.
- * The time complexity for getUsers() is O(n), since all n users are simply taken from the second tree, already sorted.
+ * The time complexity for addUser() is O(logn), since it is O(1) on average for the hash table and O(logn) for the BST.
+ * The time complexity for addUsers() is O(n + m*logm) for m new users, since they are sorted and merged with the n users
+ * already stored, after which the tree is rebuilt bottom-up in linear time.
+ * The time complexity for getUser() is O(1) on average, due to the fact that users are looked up in the hash table by ID.
+ * The time complexity for getUsers() is O(n), since all n users are simply taken from the tree, already sorted.
+ * With an offset and a limit, getUsers() is O(logn + k) for a page of k users, and countUsersJoinedBefore() is O(logn),
+ * since every node of the tree keeps the size of its subtree, so whole subtrees can be skipped or counted at once.
  * The time complexity for getUsersContaining() is O(n), since all n users have to be checked, and because they are
- * already sorted by date when taken from the second tree.
- * The time complexity for getUsersJoinedBefore() is O(n), because of the same reasons as above. It should be noted that while
- * the second BST is ordered by date, the date doesn't really function as a key, since there can be more users with the
- * same join date. Thus, a binary search for a specific date would be risky, since some required dates could be omitted.
- * Due to the usage of red black trees, all time complexities are the same, both in worst and in best case.
+ * already sorted by date when taken from the tree.
+ * The time complexity for getUsersJoinedBefore() and getUsersJoinedBetween() is O(k + logn) for k results. It should be
+ * noted that while the BST is ordered by date, the date doesn't really function as a key, since there can be more
+ * users with the same join date, which can end up in either subtree of a node with that date after rotations. Thus, only
+ * the subtrees whose dates are strictly outside the range are skipped, so that no required dates are omitted.
+ * Due to the usage of a red black tree, all time complexities of the tree are the same, both in worst and in best case.
  *
  * The main advantage of using a red black binary search tree is that it allows for easy retrieval of users sorted by
  * date, removing the need to sort them for every operation. So, even though insertions are done in O(logn), getting
  * users is always done in O(n), which is better than inserting in O(1) and getting users in O(nlogn) (what would
  * happen when using a hash table), since insertions are done only once, but retrievals are done many times.
- * Also, the use of a second tree to store users, while doubling the amount of memory required, has the advantage of
- * allowing quick lookups of users by ID, in O(logn). This is useful not only for the getUser() method, which is done in
- * O(logn) instead of O(n) (as it would be in a BST ordered by date), but also for the addUser() method, which first
- * requires a check to see if a user can be added. This reduces the complexity of addUser() from O(n) to O(logn). While
- * hash tables could have provided a time complexity of O(1) for roughly the same amount of memory used, they would also
- * have a worst case performance of O(n), which could only be avoided using a very large number of buckets. By using a
- * BST instead, it is ensured that only as much memory as needed is used, and the getUser() operation still scales well.
+ * Lookups by ID, on the other hand, don't need any order, so they are done in a hash table. This is useful not only
+ * for the getUser() method, which is done in O(1) on average instead of O(n) (as it would be in a BST ordered by date),
+ * but also for the addUser() method, which first requires a check to see if a user can be added. The hash table uses
+ * open addressing, so every user only takes an int and a reference in it, and it doubles in size whenever it becomes
+ * three quarters full, so that lookups never need more than a few steps and only as much memory as needed is used,
+ * which is less than a second tree of users ordered by ID would take.
+ *
+ * The store can be used by many threads at once, as it is by the web app: it is guarded by a read-write lock, so any
+ * number of threads can read it at the same time, while users are added one batch at a time.
  *
  * @author: 1504815
  */
@@ -37,135 +44,86 @@ package uk.ac.warwick.java.cs126.services;
 import uk.ac.warwick.java.cs126.models.User;
 
 import java.util.Date;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 public class UserStore implements IUserStore {
     /*
-     * Red Black Binary Search Tree adapted from http://algs4.cs.princeton.edu/33balanced/RedBlackLiteBST.java.html;
-     * used to store users ordered by ID and perform the getUser() operation;
+     * Hash map from user IDs to users, using open addressing with linear probing; used for getUser() and to check
+     * whether an ID is already taken in addUser(). IDs are kept in a primitive array, so no Integer objects are
+     * created, and the table doubles in size whenever it becomes three quarters full, which keeps probe sequences
+     * short however many users are added.
      */
-    class UserRedBlackBST {
-        // BST helper node data type
-        class Node {
-            private User user; // user associated with the node; contains the key as well (its ID)
-            private Node left, right; // links to left and right subtrees
-            private boolean colour; // colour of parent link
-
-            public Node(User user, boolean colour) {
-                this.user = user;
-                this.colour = colour;
-            }
+    class UserIdMap {
+        private int[] keys; // user IDs
+        private User[] users; // user with each ID; a null user marks an empty slot
+        private int size; // number of users in the map
+
+        // initialise the table with a power of two capacity, so that the hash can be reduced with a mask
+        public UserIdMap() {
+            keys = new int[16];
+            users = new User[16];
+            size = 0;
         }
 
-        // constants used for "colouring" the tree nodes
-        private static final boolean RED = true;
-        private static final boolean BLACK = false;
-
-        private Node root; // root of the BST
-        private int nodeCount; // number of users in BST
-
-        // basic constructor
-        public UserRedBlackBST() {
-            root = null;
-            nodeCount = 0;
+        // spread the bits of an ID over the table
+        private int slot(int key, int mask) {
+            int hash = key * 0x9E3779B9;
+            return (hash ^ (hash >>> 16)) & mask;
         }
 
-        // insert a new user in the tree
-        public void add(User user) {
-            root = insert(root, user);
-            root.colour = BLACK;
-        }
+        // return the user with the given ID, or null if there is none
+        public User get(int key) {
+            int mask = keys.length - 1;
+            int i = slot(key, mask);
 
-        /*
-         * used in the add method to add a user in the given node's subtree - it is assumed that two users with the same ID
-         * will never be added, so the method doesn't check for duplicates (this is done in the addUser() method of UserStore)
-         */
-        private Node insert(Node h, User user) {
-            // if a null node has been reached, add the new user there
-            if (h == null) {
-                nodeCount++;
-                return new Node(user, RED);
+            while (users[i] != null) {
+                if (keys[i] == key) {
+                    return users[i];
+                }
+                i = (i + 1) & mask;
             }
+            return null;
+        }
 
-            // smaller IDs go in the left subtree, greater IDs go in the right subtree
-            if (user.getId() < h.user.getId()) {
-                h.left = insert(h.left, user);
-            }
-            else {
-                h.right = insert(h.right, user);
-            }
+        // add a user whose ID isn't in the map yet
+        public void put(User user) {
+            int mask = keys.length - 1;
+            int i = slot(user.getId(), mask);
 
-            // balance the tree and correctly set colours
-            if (isRed(h.right) && !isRed(h.left)) {
-                h = rotateLeft(h);
+            while (users[i] != null) {
+                i = (i + 1) & mask;
             }
-            if (isRed(h.left) && isRed(h.left.left)) {
-                h = rotateRight(h);
-            }
-            if (isRed(h.left) && isRed(h.right)) {
-                flipColours(h);
-            }
-
-            return h;
-        }
-
-        // check if Node x is red
-        private boolean isRed(Node x) {
-            if (x == null) {
-                return false;
+            keys[i] = user.getId();
+            users[i] = user;
+            if (++size * 4 > keys.length * 3) {
+                resize();
             }
-            return x.colour == RED;
         }
 
-        // rotate right to balance tree
-        private Node rotateRight(Node h) {
-            Node x = h.left;
-
-            h.left = x.right;
-            x.right = h;
-            x.colour = h.colour;
-            h.colour = RED;
-
-            return x;
-        }
-
-        // rotate left to balance tree
-        private Node rotateLeft(Node h) {
-            Node x = h.right;
-
-            h.right = x.left;
-            x.left = h;
-            x.colour = h.colour;
-            h.colour = RED;
-
-            return x;
-        }
-
-        // flip the colours of the node and its children; called only when node is black and children are red
-        private void flipColours(Node h) {
-            h.colour = RED;
-            h.left.colour = BLACK;
-            h.right.colour = BLACK;
-        }
-
-        // return the user with the given ID, or null if it doesn't exist
-        public User getUserById(int id) {
-            return getUserById(root, id);
+        // get the number of users in the map
+        public int size() {
+            return size;
         }
 
-        // search in the subtree given by node h for a user with the given ID
-        public User getUserById(Node h, int id) {
-            // if nothing was found, return null
-            if (h == null) {
-                return null;
-            }
-            // compare the ID to the current node's ID to determinte what to do
-            if (id == h.user.getId()) {
-                return h.user;
+        // double the capacity of the table and re-insert all users
+        private void resize() {
+            int[] oldKeys = keys;
+            User[] oldUsers = users;
+            int mask = oldKeys.length * 2 - 1;
+
+            keys = new int[oldKeys.length * 2];
+            users = new User[oldKeys.length * 2];
+            for (int j = 0; j < oldKeys.length; j++) {
+                if (oldUsers[j] != null) {
+                    int i = slot(oldKeys[j], mask);
+                    while (users[i] != null) {
+                        i = (i + 1) & mask;
+                    }
+                    keys[i] = oldKeys[j];
+                    users[i] = oldUsers[j];
+                }
             }
-            else if (id < h.user.getId()) {
-                return getUserById(h.left, id);
-            }
-            return getUserById(h.right, id);
         }
     }
 
@@ -179,10 +137,12 @@ public class UserStore implements IUserStore {
             private User user; // user associated with the node; contains the key as well (its ID)
             private Node left, right; // links to left and right subtrees
             private boolean colour; // colour of parent link
+            private int size; // number of nodes in the subtree rooted at this node
 
             public Node(User user, boolean colour) {
                 this.user = user;
                 this.colour = colour;
+                size = 1;
             }
         }
 
@@ -191,12 +151,18 @@ public class UserStore implements IUserStore {
         private static final boolean BLACK = false;
 
         private Node root; // root of the BST
-        private int nodeCount; // number of weets in BST
 
         // basic constructor
         public DateRedBlackBST() {
             root = null;
-            nodeCount = 0;
+        }
+
+        // get the number of nodes in the subtree rooted at x
+        private int size(Node x) {
+            if (x == null) {
+                return 0;
+            }
+            return x.size;
         }
 
         // insert a new user in the tree
@@ -209,7 +175,6 @@ public class UserStore implements IUserStore {
         private Node insert(Node h, User user) {
             // if a null node has been reached, add the new user there
             if (h == null) {
-                nodeCount++;
                 return new Node(user, RED);
             }
 
@@ -233,6 +198,7 @@ public class UserStore implements IUserStore {
             if (isRed(h.left) && isRed(h.right)) {
                 flipColours(h);
             }
+            h.size = size(h.left) + 1 + size(h.right);
 
             return h;
         }
@@ -253,6 +219,8 @@ public class UserStore implements IUserStore {
             x.right = h;
             x.colour = h.colour;
             h.colour = RED;
+            x.size = h.size;
+            h.size = size(h.left) + 1 + size(h.right);
 
             return x;
         }
@@ -265,6 +233,8 @@ public class UserStore implements IUserStore {
             x.left = h;
             x.colour = h.colour;
             h.colour = RED;
+            x.size = h.size;
+            h.size = size(h.left) + 1 + size(h.right);
 
             return x;
         }
@@ -289,7 +259,7 @@ public class UserStore implements IUserStore {
 
         // return a list of all users
         public User[] getUserList() {
-            User[] userList = new User[nodeCount];
+            User[] userList = new User[size(root)];
             int[] counter = {0}; // counter used as an array to be modified in subsequent method calls
 
             getUserList(root, userList, counter);
@@ -310,6 +280,89 @@ public class UserStore implements IUserStore {
             getUserList(x.left, userList, counter); // go to the left subtree
         }
 
+        /*
+         * return at most limit users, starting with the most recent and skipping the first offset ones; since every
+         * node knows the size of its subtree, whole subtrees are skipped at once, so only O(logn + limit) nodes are visited
+         */
+        public User[] getUserList(int offset, int limit) {
+            int count = Math.min(limit, Math.max(size(root) - offset, 0));
+            User[] userList = new User[count];
+            int[] counter = {0}; // counter used as an array to be modified in subsequent method calls
+
+            getUserList(root, userList, counter, offset);
+            return userList;
+        }
+
+        // skip the first offset users of the subtree of x, from the right, and add the following ones until the list is full
+        private void getUserList(Node x, User[] userList, int[] counter, int offset) {
+            // if the node is null or the list is full, go back
+            if (x == null || counter[0] == userList.length) {
+                return;
+            }
+
+            int rightSize = size(x.right);
+            // if the whole right subtree is skipped, there is no need to go through it
+            if (offset < rightSize) {
+                getUserList(x.right, userList, counter, offset);
+            }
+            if (offset <= rightSize && counter[0] < userList.length) {
+                userList[counter[0]++] = x.user;
+            }
+            getUserList(x.left, userList, counter, Math.max(offset - rightSize - 1, 0));
+        }
+
+        /*
+         * Replace the contents of the tree with the given users, which must be in in-order; the tree is built bottom-up,
+         * in O(n), as a perfectly balanced 2-3 tree (a 3-node being a black node with a red left child), instead of
+         * inserting the users one by one in O(nlogn)
+         */
+        public void build(User[] users) {
+            long capacity = 0; // number of users a 2-3 tree of the current height can hold at most
+
+            // find the smallest height at which all users fit
+            while (capacity < users.length) {
+                capacity = capacity * 3 + 2;
+            }
+            root = build(users, 0, users.length, (int) ((capacity - 2) / 3));
+        }
+
+        /*
+         * build a subtree holding count users starting at the given position, where every subtree of the root can hold
+         * at most childCapacity users; the root is a 2-node if the children can hold the remaining users, and a
+         * 3-node otherwise, the users being split as evenly as possible between the children
+         */
+        private Node build(User[] users, int start, int count, int childCapacity) {
+            if (count == 0) {
+                return null;
+            }
+
+            int grandchildCapacity = (childCapacity - 2) / 3;
+
+            if (count - 1 <= 2 * childCapacity) {
+                int leftCount = (count - 1) / 2;
+                Node h = new Node(users[start + leftCount], BLACK);
+
+                h.left = build(users, start, leftCount, grandchildCapacity);
+                h.right = build(users, start + leftCount + 1, count - 1 - leftCount, grandchildCapacity);
+                h.size = count;
+                return h;
+            }
+
+            int firstCount = (count - 2) / 3;
+            int secondCount = (count - 2 - firstCount) / 2;
+            int thirdCount = count - 2 - firstCount - secondCount;
+            Node x = new Node(users[start + firstCount], RED);
+            Node h = new Node(users[start + firstCount + 1 + secondCount], BLACK);
+
+            x.left = build(users, start, firstCount, grandchildCapacity);
+            x.right = build(users, start + firstCount + 1, secondCount, grandchildCapacity);
+            h.left = x;
+            x.size = firstCount + 1 + secondCount;
+            h.right = build(users, start + firstCount + secondCount + 2, thirdCount, grandchildCapacity);
+            h.size = count;
+            return h;
+        }
+
         // return the list of all users whose names contain the given query string
         public User[] getUserListByQueryString(String query) {
             // the users will be added in a linked list first, since it is unknown how many of them there will be
@@ -345,39 +398,83 @@ public class UserStore implements IUserStore {
             getUserListByQueryString(x.left, userList, query); // go to the left subtree
         }
 
-        // return the list of all users who joined before the given date
-        private User[] getUserListBeforeDate(Date date) {
-            // the users will be added in a linked list first, since it is unknown how many of them there will be
-            LinkedList userList = new LinkedList();
+        /*
+         * return the list of all users whose dates are between from and to (both inclusive), or null if there are none;
+         * a null from means there is no lower bound. Since the tree is ordered by date, subtrees that lie entirely
+         * outside the range are skipped, so only O(k + logn) nodes are visited for k results, which are put directly
+         * into an array of the right size after counting them in O(logn)
+         */
+        private User[] getUserListBetweenDates(Date from, Date to) {
+            int count = countBetweenDates(from, to);
 
-            getUserListBeforeDate(root, userList, date);
-            if (userList.size() == 0) {
+            if (count == 0) {
                 return null;
             }
-            // copy the list elements into an array and return it
-            User[] userArray = new User[userList.size()];
-            ListElement temp = userList.getHead();
-            int counter = userList.size();
 
-            while (temp != null) {
-                userArray[--counter] = temp.getUser();
-                temp = temp.getNext();
-            }
+            User[] userArray = new User[count];
+            int[] counter = {0}; // counter used as an array to be modified in subsequent method calls
+
+            getUserListBetweenDates(root, userArray, counter, from, to);
             return userArray;
         }
 
-        private void getUserListBeforeDate(Node x, LinkedList userList, Date date) {
+        /*
+         * count the users whose dates are between from and to (both inclusive), where a null from means there is no
+         * lower bound, as the difference of two ranks, in O(logn)
+         */
+        public int countBetweenDates(Date from, Date to) {
+            if (from == null) {
+                return rank(root, to, true);
+            }
+            if (from.compareTo(to) > 0) {
+                return 0;
+            }
+            return rank(root, to, true) - rank(root, from, false);
+        }
+
+        /*
+         * count the users in the subtree of x whose dates are before the given date, or also on it if inclusive is true;
+         * only one path from the root is followed, since whenever the current node is counted, its whole left subtree
+         * is too, even though equal dates can be found in both subtrees
+         */
+        private int rank(Node x, Date date, boolean inclusive) {
+            int count = 0;
+
+            while (x != null) {
+                int comparison = x.user.getDateJoined().compareTo(date);
+
+                if (comparison < 0 || (inclusive && comparison == 0)) {
+                    count += size(x.left) + 1;
+                    x = x.right;
+                }
+                else {
+                    x = x.left;
+                }
+            }
+            return count;
+        }
+
+        private void getUserListBetweenDates(Node x, User[] userArray, int[] counter, Date from, Date to) {
             // if the node is null, go back
             if (x == null) {
                 return;
             }
 
-            getUserListBeforeDate(x.right, userList, date); // go to the right subtree
-            // if the current user has joined before or on the given date, add it to the list
-            if (x.user.getDateJoined().compareTo(date) <= 0) {
-                userList.add(x.user);
+            Date date = x.user.getDateJoined();
+            boolean afterFrom = from == null || date.compareTo(from) >= 0;
+            boolean beforeTo = date.compareTo(to) <= 0;
+
+            // the right subtree only holds dates after to if the current node's date is already after it
+            if (beforeTo) {
+                getUserListBetweenDates(x.right, userArray, counter, from, to);
+            }
+            if (afterFrom && beforeTo) {
+                userArray[counter[0]++] = x.user;
+            }
+            // the left subtree only holds dates before from if the current node's date is already before it
+            if (afterFrom) {
+                getUserListBetweenDates(x.left, userArray, counter, from, to);
             }
-            getUserListBeforeDate(x.left, userList, date); // go to the left subtree
         }
     }
 
@@ -441,46 +538,226 @@ public class UserStore implements IUserStore {
         }
     }
 
-    private UserRedBlackBST userIdTree; // store users in a binary search tree ordered by ID
+    private UserIdMap userIds; // store users in a hash table keyed by ID
     private DateRedBlackBST userDateTree; // store users in a binary search tree ordered by join date
+    private Lock readLock; // held while reading the store, by any number of threads at once
+    private Lock writeLock; // held while changing the store, by one thread at a time and while nobody reads it
+
+    // addUsers() only rebuilds the tree when adding more than 1/SMALL_BATCH_FACTOR times as many users as are stored
+    private static final int SMALL_BATCH_FACTOR = 16;
 
-    // initialise the two trees
+    // initialise the hash table and the tree
     public UserStore() {
         userDateTree = new DateRedBlackBST();
-        userIdTree = new UserRedBlackBST();
+        userIds = new UserIdMap();
+        ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+        readLock = lock.readLock();
+        writeLock = lock.writeLock();
     }
 
-    // add a new user if its ID isn't already in use, to both trees
+    // add a new user if its ID isn't already in use, to both the hash table and the tree
     public boolean addUser(User usr) {
-        if (userIdTree.getUserById(usr.getId()) == null) {
-            userIdTree.add(usr);
-            userDateTree.add(usr);
-            return true;
+        writeLock.lock();
+        try {
+            if (userIds.get(usr.getId()) == null) {
+                userIds.put(usr);
+                userDateTree.add(usr);
+                return true;
+            }
+            return false;
+        }
+        finally {
+            writeLock.unlock();
+        }
+    }
+
+    /*
+     * Add many users at once, as if addUser() was called for each of them in order, and return the number of users
+     * added. Instead of inserting the users into the tree one by one, they are sorted once, merged with the users
+     * already in the tree, and the tree is rebuilt bottom-up, in O(n + m*logm) for m new users, which is much faster
+     * when loading large numbers of users. If only a few users are added to a large store, they are simply added one by one.
+     */
+    public int addUsers(User[] users) {
+        writeLock.lock();
+        try {
+            int added = 0;
+
+            if ((long) users.length * SMALL_BATCH_FACTOR < userIds.size()) {
+                for (int i = 0; i < users.length; i++) {
+                    if (users[i] != null && addUser(users[i])) {
+                        added++;
+                    }
+                }
+                return added;
+            }
+
+            /*
+             * add the users whose IDs aren't taken to userIds, in the given order, and collect them in reverse order; users
+             * with equal dates must be in reverse order of addition in the tree, as addUser() would have left them, so they
+             * go before older users with the same date after the (stable) sort by join date
+             */
+            int[] order = new int[users.length];
+            for (int i = 0; i < users.length; i++) {
+                if (users[i] != null && userIds.get(users[i].getId()) == null) {
+                    userIds.put(users[i]);
+                    order[users.length - 1 - added++] = i;
+                }
+            }
+            System.arraycopy(order, users.length - added, order, 0, added);
+            sortIndices(users, order, added);
+
+            User[] newest = userDateTree.getUserList();
+            int existing = newest == null ? 0 : newest.length;
+            User[] byDate = new User[existing + added];
+            int i = existing - 1;
+            int j = 0;
+            for (int k = 0; k < byDate.length; k++) {
+                if (j < added && (i < 0 || users[order[j]].getDateJoined().compareTo(newest[i].getDateJoined()) <= 0)) {
+                    byDate[k] = users[order[j++]];
+                }
+                else {
+                    byDate[k] = newest[i--];
+                }
+            }
+
+            userDateTree.build(byDate);
+            return added;
+        }
+        finally {
+            writeLock.unlock();
+        }
+    }
+
+    /*
+     * Sort the first count positions of order, which hold indices into users, by the join dates of the users, using
+     * merge sort; it is stable, so indices of users with equal dates stay in the same order
+     */
+    private void sortIndices(User[] users, int[] order, int count) {
+        int[] buffer = new int[count];
+
+        for (int width = 1; width < count; width *= 2) {
+            for (int left = 0; left < count - width; left += 2 * width) {
+                int middle = left + width;
+                int right = middle + width < count ? middle + width : count;
+                int i = left, j = middle, k = left;
+
+                while (i < middle && j < right) {
+                    if (users[order[j]].getDateJoined().compareTo(users[order[i]].getDateJoined()) < 0) {
+                        buffer[k++] = order[j++];
+                    }
+                    else {
+                        buffer[k++] = order[i++];
+                    }
+                }
+                while (i < middle) {
+                    buffer[k++] = order[i++];
+                }
+                while (j < right) {
+                    buffer[k++] = order[j++];
+                }
+                System.arraycopy(buffer, left, order, left, right - left);
+            }
         }
-        return false;
     }
 
     // return the User that has the given ID
     public User getUser(int uid) {
-        return userIdTree.getUserById(uid);
+        readLock.lock();
+        try {
+            return userIds.get(uid);
+        }
+        finally {
+            readLock.unlock();
+        }
     }
 
     // return an array of users sorted descending by join date
     public User[] getUsers() {
-        return userDateTree.getUserList();
+        readLock.lock();
+        try {
+            return userDateTree.getUserList();
+        }
+        finally {
+            readLock.unlock();
+        }
+    }
+
+    /*
+     * return at most limit users sorted descending by join date, skipping the first offset users; the subtree sizes
+     * kept in userDateTree allow a page far down the list to be found without copying the users before it
+     */
+    public User[] getUsers(int offset, int limit) {
+        readLock.lock();
+        try {
+            User[] nullCase = {}; // value to return in case there are no users, since Witter crashes if null is returned
+
+            if (offset < 0 || limit <= 0) {
+                return nullCase;
+            }
+            return userDateTree.getUserList(offset, limit);
+        }
+        finally {
+            readLock.unlock();
+        }
     }
 
     // return an array of users whose names contain the given String
     public User[] getUsersContaining(String query) {
-        // prevent crash if query string is null
-        if (query == null) {
-            return null;
+        readLock.lock();
+        try {
+            // prevent crash if query string is null
+            if (query == null) {
+                return null;
+            }
+            return userDateTree.getUserListByQueryString(query);
+        }
+        finally {
+            readLock.unlock();
         }
-        return userDateTree.getUserListByQueryString(query);
     }
 
     // return an array of users who joined before or on the given Date
     public User[] getUsersJoinedBefore(Date dateBefore) {
-        return userDateTree.getUserListBeforeDate(dateBefore);
+        readLock.lock();
+        try {
+            // prevent crash if date is null
+            if (dateBefore == null) {
+                return null;
+            }
+            return userDateTree.getUserListBetweenDates(null, dateBefore);
+        }
+        finally {
+            readLock.unlock();
+        }
+    }
+
+    // return the number of users who joined before or on the given Date, without creating the array of users
+    public int countUsersJoinedBefore(Date dateBefore) {
+        readLock.lock();
+        try {
+            // prevent crash if date is null
+            if (dateBefore == null) {
+                return 0;
+            }
+            return userDateTree.countBetweenDates(null, dateBefore);
+        }
+        finally {
+            readLock.unlock();
+        }
+    }
+
+    // return an array of users who joined from one Date to another (both inclusive), sorted descending by join date
+    public User[] getUsersJoinedBetween(Date from, Date to) {
+        readLock.lock();
+        try {
+            // prevent crash if a date is null
+            if (from == null || to == null) {
+                return null;
+            }
+            return userDateTree.getUserListBetweenDates(from, to);
+        }
+        finally {
+            readLock.unlock();
+        }
     }
 }
@@ -1,41 +1,72 @@
 /**
- * WeetStore is implemented using three red black binary search trees. The first tree stores weets ordered by ID
- * for quick access to weets in the getWeet() method. The second tree is used to store weets as well, sorted by
- * date, being used to provide a fast way of carrying out operations that require getting weets sorted by date.
- * The third tree is used to store trending topics ordered lexicographically, allowing their number of occurences
- * to be easily modified for the getTrending() method.
+ * WeetStore is implemented using a red black binary search tree, which stores weets sorted by date, being used to
+ * provide a fast way of carrying out operations that require getting weets sorted by date. Weets are also numbered
+ * in insertion order and kept in a table, and a hash table keyed by weet ID gives the number of every weet, for
+ * quick access to weets in the getWeet() method. Trending topics are interned into integer IDs by a hash table
+ * dictionary, allowing their number of occurences to be easily modified for the getTrending() method. An inverted
+ * index maps every trigram (three consecutive characters) to the numbers of the weets containing it, so that
+ * getWeetsContaining() only has to check the few weets that contain all trigrams of the query. Finally, a hash
+ * map keyed by user ID keeps every user's weet numbers in date order for getWeetsByUser(), and another one keyed by
+ * day does the same for each day's weets, for getWeetsOn().
  *
- * The memory complexity is O(n + m), where n is the number of weets, and m the number of trending topics.
- * However, 2n memory is in fact used to store weets, since they are stored twice.
+ * The memory complexity is O(n + m + l), where n is the number of weets, m the number of trending topics and l the
+ * total length of all messages. However, 2n memory is in fact used to store weets, since they are stored both in the
+ * tree and in the weet table, and every message contributes one postings entry per distinct trigram to the trigram index.
  *
- * The time complexity for addWeet() is O(logn), since the insertion is done in binary search trees.
- * The time complexity for getWeet() is O(logn), since it implies retrieving an element from the first BST.
- * The time complexity for getWeets() is O(n), since all n weets are simply taken from the second BST, already in sorted order.
- * The time complexity for getWeetsByUser() is O(n), since all n weets have to be considered, and because they are
- * already sorted when taken from the second tree.
- * The time complexity for getWeetsContaining() is O(n), because of the same reasons as above.
- * The time complexity for getWeetsBefore() is O(n), because of the same reasons as above.
- * The time complexity for getWeetsOn() is O(n), because of the same reasons as above.
- * The time complexity for getTrending() is O(m*logm), since the trending topics must be retrieved from the BST (in O(m))
- * and then sorted (in O(m*logm)) using Quick Sort.
+ * The time complexity for addWeet() is O(logn), since the insertion is done in a binary search tree.
+ * The time complexity for addWeets() is O(n + m*logm) for m new weets, since they are sorted and merged with the n weets
+ * already stored, after which the tree is rebuilt bottom-up in linear time.
+ * The time complexity for getWeet() is O(1) on average, since it implies looking up the weet's number in a hash table.
+ * The time complexity for getWeets() is O(n), since all n weets are simply taken from the BST, already in sorted order.
+ * The time complexity for getWeets() with an offset and a limit is O(logn + k) for a page of k weets, and the time
+ * complexity for countWeetsBefore() and countWeetsBetween() is O(logn), since every node of the BST keeps the
+ * size of its subtree, so whole subtrees can be skipped or counted at once.
+ * The time complexity for getWeetsByUser() is O(k), where k is the number of weets of the user (or the page size, when
+ * a limit is given), since every user's weets are kept in date order in a hash map keyed by user ID.
+ * The time complexity for getTimeline() is O(f*logw + k*logf) for a page of k weets by f users followed, who have posted
+ * up to w weets each, since the users' weet lists are merged lazily through a heap, which stops after k weets.
+ * When the timeline cache is enabled, addWeet() also pushes the weet to the buffers of the author's followers who
+ * have one, in O(f) for f followers (unless the author has too many), and getTimeline() is O(k + p*logw) for p popular
+ * users followed, whose weets are merged on read.
+ * The time complexity for getWeetsContaining() is O(c*logc + p) for queries of three or more characters, where p is the
+ * total length of the postings lists of the query's trigrams and c the number of candidates found by intersecting them,
+ * since the trigram index narrows the search down before any message is checked. Shorter queries are O(n), as above.
+ * The time complexity for getWeetsBefore() and getWeetsBetween() is O(k + logn) for k results, since the subtrees of the
+ * BST that lie entirely outside the range of dates are skipped.
+ * The time complexity for getWeetsOn() and getWeetsOnDay() is O(k + logk) for the k weets of the day, since they are
+ * kept in at most three day buckets, whose weets outside the requested day are skipped with a binary search.
+ * The time complexity for getTrending() is O(k), where k is the number of topics returned (10 by default), since the
+ * trending ranking is kept sorted as topics are used, at a cost of O(1) per hashtag in addWeet().
+ * The time complexity for getTrending() over a window is O(b*t + t*logk), where b is the number of hour and day buckets
+ * in the window and t the number of topics used in them; the decayed variant is O(k*logk), since its scores are kept
+ * in an indexed heap, updated in O(logm) per hashtag in addWeet().
  *
  * The main advantage of using a red black binary search tree where weets are ordered by date is that it allows for easy
  * retrieval of weets, removing the need to sort them for every operation. So, even though insertions are done in O(logn),
  * getting weets is always done in O(n), which is better than inserting in O(1) and getting weets in O(nlogn) (what would
  * happen when using a hash table), since insertions are done only once, but retrievals are done many times.
- * Also, using another BST to store weets ordered by ID, while doubling the amount of memory required, has the advantage of
- * allowing quick lookups of weets by ID, in O(logn), instead of O(n) in the date-ordered tree. This is useful not only for
- * the getWeet() method, but also for the addWeet() method, which first requires a check to see if a weet can be added (done
- * with getWeet()).
- * Finally, the BST used to store trending topics and their frequencies allows quick access to them in order to
- * modify them in O(logn). However, the complexity for getTrending() will be O(m*logm), since the data must be sorted.
+ * Lookups by ID, on the other hand, don't need any order, so they are done with a hash table, which is used not only
+ * by the getWeet() method, but also by the addWeet() method, which first requires a check to see if a weet can be added.
+ * Finally, trending topics are found by scanning each message once by hand, and looked up in a hash table dictionary
+ * directly from the characters of the message, in O(1) on average and without creating any strings for topics that
+ * have been seen before; since there is one lookup per hashtag of every weet added, this matters a lot when loading
+ * many weets at once. Every topic is also kept in a ranking of buckets grouped by count, so that the most used
+ * topics never have to be sorted when getTrending() is called. Topic counts are also kept per hour and per day, so that
+ * topics trending within a window of time can be found without going through the history, and in an exponentially
+ * decayed ranking, so that old topics don't stay at the top forever.
  *
- * While hash tables may have provided O(1) on average for getting weets by ID or trending topics, due to the fact that
- * the number of weets or trending topics can be extremely high, these hash tables would end up performing worse than BSTs,
- * or taking up unnecessarily much memory (for a large number of buckets). For example, if we assume that there will be at
- * most 1,000,000 trending topics, a desirable amount of buckets would be 5,0000 - 10,0000, a situation in which, supposing
- * that the hash function assures an even distribution, it would take around 10 - 20 steps to find an element. On the other
- * hand, using a BST, it would also take around 20 steps, but there will be no overheads regarding memory use.
+ * A hash table with a fixed number of buckets would end up performing worse than a BST, or taking up unnecessarily
+ * much memory, since the number of weets can be extremely high. The hash tables used here avoid this problem by using
+ * open addressing and doubling in size whenever they fill up past a fixed load factor, so that they never need more
+ * than a couple of steps to find an element. The table of weet IDs only holds two ints per slot (the ID and the weet's
+ * number) and is allowed to become three quarters full, so it takes less memory than a second tree of weets ordered
+ * by ID would, since every node of such a tree holds three references and a colour.
+ *
+ * The store can be used by many threads at once, as it is by the web app. The date tree and the other indexes each
+ * have a read-write lock, so any number of threads can read them at the same time, and rebuilding the tree in
+ * addWeets() doesn't hold up lookups by ID, user, day or trigram. A weet is added to the indexes before the tree, and
+ * the tree is locked before the indexes are released, so every weet in the tree can be found by ID, and weets go into
+ * both in the same order.
  *
  * @author: 1504815
  */
@@ -47,6 +78,8 @@ import uk.ac.warwick.java.cs126.models.Weet;
 
 import java.io.BufferedReader;
 import java.util.Date;
+import java.time.LocalDate;
+import java.time.ZoneId;
 import java.io.FileReader;
 import java.text.ParseException;
 import java.io.IOException;
@@ -54,23 +87,26 @@ import java.io.FileNotFoundException;
 import java.io.File;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
-import java.util.regex.*; // used in pattern matching to find trending topics in a weet
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 public class WeetStore implements IWeetStore {
     /*
      * Red Black Binary Search Tree adapted from http://algs4.cs.princeton.edu/33balanced/RedBlackLiteBST.java.html;
-     * used to store weets ordered by ID and perform the getWeet() operation;
+     * used to store weets and perform all operations that require weets returned in date order;
      */
-    class WeetRedBlackBST {
+    class DateRedBlackBST {
         // BST helper node data type
         class Node {
             private Weet weet; // weet associated with the node; contains the key as well (its ID)
             private Node left, right; // links to left and right subtrees
             private boolean colour; // colour of parent link
+            private int size; // number of nodes in the subtree rooted at this node
 
             public Node(Weet weet, boolean colour) {
                 this.weet = weet;
                 this.colour = colour;
+                size = 1;
             }
         }
 
@@ -79,142 +115,18 @@ public class WeetStore implements IWeetStore {
         private static final boolean BLACK = false;
 
         private Node root; // root of the BST
-        private int nodeCount; // number of weets in BST
 
         // basic constructor
-        public WeetRedBlackBST() {
+        public DateRedBlackBST() {
             root = null;
-            nodeCount = 0;
-        }
-
-        // insert a new weet in the tree
-        public void add(Weet weet) {
-            root = insert(root, weet);
-            root.colour = BLACK;
-        }
-
-        /*
-         * used in the addWeet() method to add a weet in the given node's subtree - it is assumed that two weets with the same ID
-         * will never be added, so the method doesn't check for duplicates (this is done in the addWeet() method of WeetStore)
-         */
-        private Node insert(Node h, Weet weet) {
-            // if a null node has been reached, add the new weet there
-            if (h == null) {
-                nodeCount++;
-                return new Node(weet, RED);
-            }
-
-            // smaller IDs go in the left subtree, greater IDs go in the right subtree
-            if (weet.getId() < h.weet.getId()) {
-                h.left = insert(h.left, weet);
-            }
-            else {
-                h.right = insert(h.right, weet);
-            }
-
-            // balance the tree and correctly set colours
-            if (isRed(h.right) && !isRed(h.left)) {
-                h = rotateLeft(h);
-            }
-            if (isRed(h.left) && isRed(h.left.left)) {
-                h = rotateRight(h);
-            }
-            if (isRed(h.left) && isRed(h.right)) {
-                flipColours(h);
-            }
-
-            return h;
         }
 
-        // check if Node x is red
-        private boolean isRed(Node x) {
+        // get the number of nodes in the subtree rooted at x
+        private int size(Node x) {
             if (x == null) {
-                return false;
-            }
-            return x.colour == RED;
-        }
-
-        // rotate right to balance tree
-        private Node rotateRight(Node h) {
-            Node x = h.left;
-
-            h.left = x.right;
-            x.right = h;
-            x.colour = h.colour;
-            h.colour = RED;
-
-            return x;
-        }
-
-        // rotate left to balance tree
-        private Node rotateLeft(Node h) {
-            Node x = h.right;
-
-            h.right = x.left;
-            x.left = h;
-            x.colour = h.colour;
-            h.colour = RED;
-
-            return x;
-        }
-
-        // flip the colours of the node and its children; called only when node is black and children are red
-        private void flipColours(Node h) {
-            h.colour = RED;
-            h.left.colour = BLACK;
-            h.right.colour = BLACK;
-        }
-
-        // return the weet with the given ID, or null if it doesn't exist
-        public Weet getWeetById(int id) {
-            return getWeetById(root, id);
-        }
-
-        // search in the subtree given by node h for a weet with the given ID
-        public Weet getWeetById(Node h, int id) {
-            // if nothing was found, return null
-            if (h == null) {
-                return null;
-            }
-            // compare the ID to the current node's ID to determinte what to do
-            if (id == h.weet.getId()) {
-                return h.weet;
-            }
-            else if (id < h.weet.getId()) {
-                return getWeetById(h.left, id);
-            }
-            return getWeetById(h.right, id);
-        }
-    }
-
-    /*
-     * Red Black Binary Search Tree adapted from http://algs4.cs.princeton.edu/33balanced/RedBlackLiteBST.java.html;
-     * used to store weets and perform all operations that require weets returned in date order;
-     */
-    class DateRedBlackBST {
-        // BST helper node data type
-        class Node {
-            private Weet weet; // weet associated with the node; contains the key as well (its ID)
-            private Node left, right; // links to left and right subtrees
-            private boolean colour; // colour of parent link
-
-            public Node(Weet weet, boolean colour) {
-                this.weet = weet;
-                this.colour = colour;
+                return 0;
             }
-        }
-
-        // constants used for "colouring" the tree nodes
-        private static final boolean RED = true;
-        private static final boolean BLACK = false;
-
-        private Node root; // root of the BST
-        private int nodeCount; // number of weets in BST
-
-        // basic constructor
-        public DateRedBlackBST() {
-            root = null;
-            nodeCount = 0;
+            return x.size;
         }
 
         // insert a new weet in the tree
@@ -227,7 +139,6 @@ public class WeetStore implements IWeetStore {
         private Node insert(Node h, Weet weet) {
             // if a null node has been reached, add the new weet there
             if (h == null) {
-                nodeCount++;
                 return new Node(weet, RED);
             }
 
@@ -251,6 +162,7 @@ public class WeetStore implements IWeetStore {
             if (isRed(h.left) && isRed(h.right)) {
                 flipColours(h);
             }
+            h.size = size(h.left) + 1 + size(h.right);
 
             return h;
         }
@@ -271,6 +183,8 @@ public class WeetStore implements IWeetStore {
             x.right = h;
             x.colour = h.colour;
             h.colour = RED;
+            x.size = h.size;
+            h.size = size(h.left) + 1 + size(h.right);
 
             return x;
         }
@@ -283,6 +197,8 @@ public class WeetStore implements IWeetStore {
             x.left = h;
             x.colour = h.colour;
             h.colour = RED;
+            x.size = h.size;
+            h.size = size(h.left) + 1 + size(h.right);
 
             return x;
         }
@@ -307,7 +223,7 @@ public class WeetStore implements IWeetStore {
 
         // return a list of all weets
         public Weet[] getWeetList() {
-            Weet[] weetList = new Weet[nodeCount];
+            Weet[] weetList = new Weet[size(root)];
             int[] counter = {0}; // counter used as an array to be modified in subsequent method calls
 
             getWeetList(root, weetList, counter);
@@ -328,39 +244,88 @@ public class WeetStore implements IWeetStore {
             getWeetList(x.left, weetList, counter); // go to the left subtree
         }
 
-        // return a list of all weets belonging to the user with the given ID
-        public Weet[] getWeetListByUserId(int uid) {
-            // the weets will be added in a linked list first, since it is unknown how many of them there will be
-            LinkedList weetList = new LinkedList();
+        /*
+         * return at most limit weets, starting with the most recent and skipping the first offset ones; since every
+         * node knows the size of its subtree, whole subtrees are skipped at once, so only O(logn + limit) nodes are
+         * visited, however deep into the history the page is
+         */
+        public Weet[] getWeetList(int offset, int limit) {
+            int count = Math.min(limit, Math.max(size(root) - offset, 0));
+            Weet[] weetList = new Weet[count];
+            int[] counter = {0}; // counter used as an array to be modified in subsequent method calls
 
-            getWeetListByUserId(root, weetList, uid);
-            if (weetList.size() == 0) {
-                return null;
+            getWeetList(root, weetList, counter, offset);
+            return weetList;
+        }
+
+        // skip the first offset weets of the subtree of x, from the right, and add the following ones until the list is full
+        private void getWeetList(Node x, Weet[] weetList, int[] counter, int offset) {
+            // if the node is null or the list is full, go back
+            if (x == null || counter[0] == weetList.length) {
+                return;
             }
-            // copy the list elements into an array and return it
-            Weet[] weetArray = new Weet[weetList.size()];
-            ListElement temp = weetList.getHead();
-            int counter = weetList.size();
 
-            while (temp != null) {
-                weetArray[--counter] = temp.getWeet();
-                temp = temp.getNext();
+            int rightSize = size(x.right);
+            // if the whole right subtree is skipped, there is no need to go through it
+            if (offset < rightSize) {
+                getWeetList(x.right, weetList, counter, offset);
             }
-            return weetArray;
+            if (offset <= rightSize && counter[0] < weetList.length) {
+                weetList[counter[0]++] = x.weet;
+            }
+            getWeetList(x.left, weetList, counter, Math.max(offset - rightSize - 1, 0));
         }
 
-        private void getWeetListByUserId(Node x, LinkedList weetList, int uid) {
-            // if the node is null, go back
-            if (x == null) {
-                return;
+        /*
+         * Replace the contents of the tree with the given weets, which must be in in-order; the tree is built bottom-up,
+         * in O(n), as a perfectly balanced 2-3 tree (a 3-node being a black node with a red left child), instead of
+         * inserting the weets one by one in O(nlogn)
+         */
+        public void build(Weet[] weets) {
+            long capacity = 0; // number of weets a 2-3 tree of the current height can hold at most
+
+            // find the smallest height at which all weets fit
+            while (capacity < weets.length) {
+                capacity = capacity * 3 + 2;
             }
+            root = build(weets, 0, weets.length, (int) ((capacity - 2) / 3));
+        }
 
-            getWeetListByUserId(x.right, weetList, uid); // go to the right subtree
-            // if the current weet belongs to the user with the given ID, add it to the list
-            if (x.weet.getUserId() == uid) {
-                weetList.add(x.weet);
+        /*
+         * build a subtree holding count weets starting at the given position, where every subtree of the root can hold
+         * at most childCapacity weets; the root is a 2-node if the children can hold the remaining weets, and a
+         * 3-node otherwise, the weets being split as evenly as possible between the children
+         */
+        private Node build(Weet[] weets, int start, int count, int childCapacity) {
+            if (count == 0) {
+                return null;
+            }
+
+            int grandchildCapacity = (childCapacity - 2) / 3;
+
+            if (count - 1 <= 2 * childCapacity) {
+                int leftCount = (count - 1) / 2;
+                Node h = new Node(weets[start + leftCount], BLACK);
+
+                h.left = build(weets, start, leftCount, grandchildCapacity);
+                h.right = build(weets, start + leftCount + 1, count - 1 - leftCount, grandchildCapacity);
+                h.size = count;
+                return h;
             }
-            getWeetListByUserId(x.left, weetList, uid); // go to the left subtree
+
+            int firstCount = (count - 2) / 3;
+            int secondCount = (count - 2 - firstCount) / 2;
+            int thirdCount = count - 2 - firstCount - secondCount;
+            Node x = new Node(weets[start + firstCount], RED);
+            Node h = new Node(weets[start + firstCount + 1 + secondCount], BLACK);
+
+            x.left = build(weets, start, firstCount, grandchildCapacity);
+            x.right = build(weets, start + firstCount + 1, secondCount, grandchildCapacity);
+            h.left = x;
+            x.size = firstCount + 1 + secondCount;
+            h.right = build(weets, start + firstCount + secondCount + 2, thirdCount, grandchildCapacity);
+            h.size = count;
+            return h;
         }
 
         // return the list of all weets containing the given query string
@@ -398,473 +363,2617 @@ public class WeetStore implements IWeetStore {
             getWeetListByQueryString(x.left, weetList, query); // go to the left subtree
         }
 
-        // return the list of all weets posted on the given date
-        private Weet[] getWeetListOnDate(Date date) {
-            // the weets will be added in a linked list first, since it is unknown how many of them there will be
-            LinkedList weetList = new LinkedList();
+        /*
+         * return the list of all weets whose dates are between from and to (both inclusive), or null if there are none;
+         * a null from means there is no lower bound. Since the tree is ordered by date, subtrees that lie entirely
+         * outside the range are skipped, so only O(k + logn) nodes are visited for k results, which are put directly
+         * into an array of the right size after counting them in O(logn)
+         */
+        private Weet[] getWeetListBetweenDates(Date from, Date to) {
+            int count = countBetweenDates(from, to);
 
-            getWeetListOnDate(root, weetList, date);
-            if (weetList.size() == 0) {
+            if (count == 0) {
                 return null;
             }
-            // copy the list elements into an array and return it
-            Weet[] weetArray = new Weet[weetList.size()];
-            ListElement temp = weetList.getHead();
-            int counter = weetList.size();
 
-            while (temp != null) {
-                weetArray[--counter] = temp.getWeet();
-                temp = temp.getNext();
-            }
+            Weet[] weetArray = new Weet[count];
+            int[] counter = {0}; // counter used as an array to be modified in subsequent method calls
+
+            getWeetListBetweenDates(root, weetArray, counter, from, to);
             return weetArray;
         }
 
-        private void getWeetListOnDate(Node x, LinkedList weetList, Date date) {
-            // if the node is null, go back
-            if (x == null) {
-                return;
-            }
-
-            int comparison = x.weet.getDateWeeted().compareTo(date);
-            if (comparison >= 0) {
-                // if the current node's date is equal to the given date, add the corresponding weet to the list
-                if (comparison == 0) {
-                    weetList.add(x.weet);
-                }
-                // since weets with equal dates to the current node's weet are stored in left subtree, go there
-                getWeetListOnDate(x.left, weetList, date);
+        /*
+         * count the weets whose dates are between from and to (both inclusive), where a null from means there is no
+         * lower bound, as the difference of two ranks, in O(logn)
+         */
+        public int countBetweenDates(Date from, Date to) {
+            if (from == null) {
+                return rank(root, to, true);
             }
-            // if the current node's date is less than the given date, go to the right subtree, where greater dates are found
-            else if (comparison < 0) {
-                getWeetListOnDate(x.right, weetList, date);
+            if (from.compareTo(to) > 0) {
+                return 0;
             }
+            return rank(root, to, true) - rank(root, from, false);
         }
 
-        // return the list of all weets posted before the given date
-        private Weet[] getWeetListBeforeDate(Date date) {
-            // the weets will be added in a linked list first, since it is unknown how many of them there will be
-            LinkedList weetList = new LinkedList();
+        /*
+         * count the weets in the subtree of x whose dates are before the given date, or also on it if inclusive is true;
+         * only one path from the root is followed, since whenever the current node is counted, its whole left subtree
+         * is too, even though equal dates can be found in both subtrees
+         */
+        private int rank(Node x, Date date, boolean inclusive) {
+            int count = 0;
 
-            getWeetListBeforeDate(root, weetList, date);
-            if (weetList.size() == 0) {
-                return null;
-            }
-            // copy the list elements into an array and return it
-            Weet[] weetArray = new Weet[weetList.size()];
-            ListElement temp = weetList.getHead();
-            int counter = weetList.size();
+            while (x != null) {
+                int comparison = x.weet.getDateWeeted().compareTo(date);
 
-            while (temp != null) {
-                weetArray[--counter] = temp.getWeet();
-                temp = temp.getNext();
+                if (comparison < 0 || (inclusive && comparison == 0)) {
+                    count += size(x.left) + 1;
+                    x = x.right;
+                }
+                else {
+                    x = x.left;
+                }
             }
-            return weetArray;
+            return count;
         }
 
-        private void getWeetListBeforeDate(Node x, LinkedList weetList, Date date) {
+        private void getWeetListBetweenDates(Node x, Weet[] weetArray, int[] counter, Date from, Date to) {
             // if the node is null, go back
             if (x == null) {
                 return;
             }
 
-            getWeetListBeforeDate(x.right, weetList, date); // go to the right subtree
-            // if the current weet was posted before or on the given date, add it to the list
-            if (x.weet.getDateWeeted().compareTo(date) <= 0) {
-                weetList.add(x.weet);
+            Date date = x.weet.getDateWeeted();
+            boolean afterFrom = from == null || date.compareTo(from) >= 0;
+            boolean beforeTo = date.compareTo(to) <= 0;
+
+            // the right subtree only holds dates after to if the current node's date is already after it
+            if (beforeTo) {
+                getWeetListBetweenDates(x.right, weetArray, counter, from, to);
+            }
+            if (afterFrom && beforeTo) {
+                weetArray[counter[0]++] = x.weet;
+            }
+            // the left subtree only holds dates before from if the current node's date is already before it
+            if (afterFrom) {
+                getWeetListBetweenDates(x.left, weetArray, counter, from, to);
             }
-            getWeetListBeforeDate(x.left, weetList, date); // go to the left subtree
         }
     }
 
-    /*
-     * Red Black Binary Search Tree adapted from http://algs4.cs.princeton.edu/33balanced/RedBlackLiteBST.java.html;
-     * used to store trending topics ordered lexicographically and perform the getTrending() operation;
-     */
-    class TrendingRedBlackBST {
-        // BST helper node data type
-        class Node {
-            private TrendingTopic trending; // trending topic associated with the node; contains the key as well (its text)
-            private Node left, right; // links to left and right subtrees
-            private boolean colour; // colour of parent link
+    // this class helps store Weet objects as elements of a Singly Linked List
+    class ListElement {
+        private Weet weet; // weet value of the list element
+        private ListElement next; // link to the next element in the list
 
-            public Node(TrendingTopic trending, boolean colour) {
-                this.trending = trending;
-                this.colour = colour;
-            }
+        // simple constructor that assigns a value to the list element
+        public ListElement(Weet weet) {
+            this.weet = weet;
         }
 
-        // constants used for "colouring" the tree nodes
-        private static final boolean RED = true;
-        private static final boolean BLACK = false;
-
-        private Node root; // root of the BST
-        private int nodeCount; // number of trending topics in BST
+        // get the list element's weet
+        public Weet getWeet() {
+            return weet;
+        }
 
-        // basic constructor
-        public TrendingRedBlackBST() {
-            root = null;
-            nodeCount = 0;
+        // get the next list element
+        public ListElement getNext() {
+            return next;
         }
 
-        // insert a new trending topic in the tree
-        public void add(TrendingTopic trending) {
-            root = insert(root, trending);
-            root.colour = BLACK;
+        // set the next list element
+        public void setNext(ListElement next) {
+            this.next = next;
         }
+    }
 
-        /*
-         * used in the addWeet() method to add a trending topic in the given node's subtree - it is assumed that two topics
-         * with the same text will never be added, so the method doesn't check for duplicates (this is done in the addWeet()
-         * method of WeetStore)
-         */
-        private Node insert(Node h, TrendingTopic trending) {
-            // if a null node has been reached, add the new weet there
-            if (h == null) {
-                nodeCount++;
-                return new Node(trending, RED);
-            }
+    /*
+     * Singly Linked List of ListElement objects in which elements are added at the front; mainly
+     * used when returning arrays, in order to allocate exactly as much memory as needed.
+     */
+    class LinkedList {
+        private ListElement head; // head of the list
+        private int size; // size of the list
 
-            int comparison = trending.getName().compareTo(h.trending.getName());
+        // empty list constructor
+        public LinkedList() {
+            head = null;
+            size = 0;
+        }
 
-            // lexicographically smaller topics go in the left subtree, greater ones go in the right subtree
-            if (comparison < 0) {
-                h.left = insert(h.left, trending);
-            }
-            else {
-                h.right = insert(h.right, trending);
-            }
+        // add element to the front
+        public void add(Weet weet) {
+            ListElement newElement = new ListElement(weet);
 
-            // balance the tree and correctly set colours
-            if (isRed(h.right) && !isRed(h.left)) {
-                h = rotateLeft(h);
-            }
-            if (isRed(h.left) && isRed(h.left.left)) {
-                h = rotateRight(h);
+            newElement.setNext(head);
+            head = newElement;
+            size++;
+        }
+
+        // get the size of the list
+        public int size() {
+            return size;
+        }
+
+        // get the head of the list - useful when traversing the list
+        public ListElement getHead() {
+            return head;
+        }
+    }
+
+    // class that helps store (String, int) pairs representing trending topics and their frequencies
+    class TrendingTopic {
+        String name; // name of the topic, without the '#' character
+        int id; // number given to the topic, in the order in which topics were first used
+        int timesUsed; // number of times the topic has been used so far
+        CountBucket bucket; // bucket of the trending ranking holding all topics used as many times as this one
+        TrendingTopic previous, next; // links to the neighbouring topics in the same bucket
+
+        // simple constructor that initialises the name and ID of the topic and the number of times it was used (once)
+        public TrendingTopic(String name, int id) {
+            this.name = name;
+            this.id = id;
+            timesUsed = 1;
+        }
+
+        // get the topic's ID
+        public int getId() {
+            return id;
+        }
+
+        // get the topic's name
+        public String getName() {
+            return name;
+        }
+
+        // get the number of times the topic has been used so far
+        public int getTimesUsed() {
+            return timesUsed;
+        }
+
+        // increase the number of times the topic has been used so far
+        public void increaseTimesUsed() {
+            timesUsed++;
+        }
+    }
+
+    // bucket of the trending ranking, holding a doubly linked list of all topics used a given number of times
+    class CountBucket {
+        int count; // number of times each topic in the bucket has been used
+        TrendingTopic head; // first topic in the bucket
+        CountBucket higher, lower; // links to the buckets with the nearest greater and smaller counts
+
+        // simple constructor that creates an empty bucket for the given count
+        public CountBucket(int count) {
+            this.count = count;
+        }
+    }
+
+    /*
+     * Ranking of trending topics by number of occurences, kept up to date as topics are used. Topics are grouped in
+     * buckets by count, and the buckets form a doubly linked list sorted by count. Since a count only ever grows by
+     * one, a topic moves at most one bucket up each time it is used, which is done in O(1), and the top k topics are
+     * read by walking down from the highest bucket, in O(k), without any sorting.
+     */
+    class TrendingRanking {
+        private CountBucket highest; // bucket with the greatest count
+        private CountBucket lowest; // bucket with the smallest count
+
+        // basic constructor for an empty ranking
+        public TrendingRanking() {
+            highest = null;
+            lowest = null;
+        }
+
+        // add a topic that has just been used for the first time
+        public void add(TrendingTopic topic) {
+            if (lowest == null || lowest.count != topic.getTimesUsed()) {
+                CountBucket bucket = new CountBucket(topic.getTimesUsed());
+
+                bucket.higher = lowest;
+                if (lowest == null) {
+                    highest = bucket;
+                }
+                else {
+                    lowest.lower = bucket;
+                }
+                lowest = bucket;
+            }
+            insert(lowest, topic);
+        }
+
+        // increase the number of times the topic has been used, moving it to the next bucket up
+        public void increment(TrendingTopic topic) {
+            CountBucket bucket = topic.bucket;
+
+            topic.increaseTimesUsed();
+            if (bucket.higher == null || bucket.higher.count != topic.getTimesUsed()) {
+                CountBucket newBucket = new CountBucket(topic.getTimesUsed());
+
+                newBucket.lower = bucket;
+                newBucket.higher = bucket.higher;
+                if (bucket.higher == null) {
+                    highest = newBucket;
+                }
+                else {
+                    bucket.higher.lower = newBucket;
+                }
+                bucket.higher = newBucket;
+            }
+
+            remove(topic);
+            insert(bucket.higher, topic);
+        }
+
+        // put the topic at the front of the given bucket
+        private void insert(CountBucket bucket, TrendingTopic topic) {
+            topic.bucket = bucket;
+            topic.previous = null;
+            topic.next = bucket.head;
+            if (bucket.head != null) {
+                bucket.head.previous = topic;
+            }
+            bucket.head = topic;
+        }
+
+        // take the topic out of its bucket, dropping the bucket if it becomes empty
+        private void remove(TrendingTopic topic) {
+            CountBucket bucket = topic.bucket;
+
+            if (topic.previous == null) {
+                bucket.head = topic.next;
+            }
+            else {
+                topic.previous.next = topic.next;
+            }
+            if (topic.next != null) {
+                topic.next.previous = topic.previous;
+            }
+
+            if (bucket.head == null) {
+                if (bucket.higher == null) {
+                    highest = bucket.lower;
+                }
+                else {
+                    bucket.higher.lower = bucket.lower;
+                }
+                if (bucket.lower == null) {
+                    lowest = bucket.higher;
+                }
+                else {
+                    bucket.lower.higher = bucket.higher;
+                }
+            }
+        }
+
+        // return the names of the k most used topics, most used first, padded with null if there are fewer topics
+        public String[] getTop(int k) {
+            String[] top = new String[k];
+            int count = 0;
+
+            for (CountBucket bucket = highest; bucket != null && count < k; bucket = bucket.lower) {
+                for (TrendingTopic topic = bucket.head; topic != null && count < k; topic = topic.next) {
+                    top[count++] = "#" + topic.getName();
+                }
+            }
+            return top;
+        }
+    }
+
+    /*
+     * Hash map from topic IDs to counts, using open addressing with linear probing; used to store the number of times
+     * each topic was used in a time bucket. A count of zero marks an empty slot, and the table doubles in size
+     * whenever it becomes half full.
+     */
+    class TopicCounts {
+        private int[] keys; // topic IDs
+        private int[] counts; // count of each topic; zero for empty slots
+        private int size; // number of topics in the map
+
+        // initialise the table with a power of two capacity, so that the hash can be reduced with a mask
+        public TopicCounts() {
+            keys = new int[8];
+            counts = new int[8];
+            size = 0;
+        }
+
+        // spread the bits of a topic ID over the table
+        private int slot(int key, int mask) {
+            int hash = key * 0x9E3779B9;
+            return (hash ^ (hash >>> 16)) & mask;
+        }
+
+        // add the given amount to the count of the topic
+        public void add(int key, int amount) {
+            int mask = keys.length - 1;
+            int i = slot(key, mask);
+
+            while (counts[i] != 0) {
+                if (keys[i] == key) {
+                    counts[i] += amount;
+                    return;
+                }
+                i = (i + 1) & mask;
+            }
+
+            keys[i] = key;
+            counts[i] = amount;
+            if (++size * 2 > keys.length) {
+                resize();
+            }
+        }
+
+        // add all counts of another map to this one
+        public void addAll(TopicCounts other) {
+            for (int i = 0; i < other.keys.length; i++) {
+                if (other.counts[i] != 0) {
+                    add(other.keys[i], other.counts[i]);
+                }
+            }
+        }
+
+        // double the capacity of the table and re-insert all topics
+        private void resize() {
+            int[] oldKeys = keys;
+            int[] oldCounts = counts;
+            int mask = oldKeys.length * 2 - 1;
+
+            keys = new int[oldKeys.length * 2];
+            counts = new int[oldKeys.length * 2];
+            for (int j = 0; j < oldKeys.length; j++) {
+                if (oldCounts[j] != 0) {
+                    int i = slot(oldKeys[j], mask);
+                    while (counts[i] != 0) {
+                        i = (i + 1) & mask;
+                    }
+                    keys[i] = oldKeys[j];
+                    counts[i] = oldCounts[j];
+                }
+            }
+        }
+
+        /*
+         * Return the IDs of the k topics with the greatest counts, greatest first (ties broken by ID); a min-heap of
+         * size k holds the best topics seen so far, so this is O(m*logk) for m topics, instead of sorting all of them
+         */
+        public int[] getTop(int k) {
+            int[] heap = new int[k]; // slots of the table, with the worst of the best k topics at the root
+            int heapSize = 0;
+
+            for (int i = 0; i < keys.length && k > 0; i++) {
+                if (counts[i] == 0) {
+                    continue;
+                }
+                if (heapSize < k) {
+                    heap[heapSize] = i;
+                    siftUp(heap, heapSize++);
+                }
+                else if (better(i, heap[0])) {
+                    heap[0] = i;
+                    siftDown(heap, heapSize);
+                }
+            }
+
+            // empty the heap from the worst topic to the best one
+            int[] top = new int[heapSize];
+            for (int i = heapSize - 1; i >= 0; i--) {
+                top[i] = keys[heap[0]];
+                heap[0] = heap[i];
+                siftDown(heap, i);
+            }
+            return top;
+        }
+
+        // return true if the topic in slot a ranks above the topic in slot b
+        private boolean better(int a, int b) {
+            if (counts[a] != counts[b]) {
+                return counts[a] > counts[b];
+            }
+            return keys[a] < keys[b];
+        }
+
+        // move the element at the given position up the min-heap until its parent ranks above it
+        private void siftUp(int[] heap, int position) {
+            while (position > 0) {
+                int parent = (position - 1) / 2;
+                if (!better(heap[parent], heap[position])) {
+                    return;
+                }
+                int temp = heap[parent];
+                heap[parent] = heap[position];
+                heap[position] = temp;
+                position = parent;
+            }
+        }
+
+        // move the root down the min-heap until both its children rank above it
+        private void siftDown(int[] heap, int heapSize) {
+            int position = 0;
+
+            while (2 * position + 1 < heapSize) {
+                int child = 2 * position + 1;
+                if (child + 1 < heapSize && better(heap[child], heap[child + 1])) {
+                    child++;
+                }
+                if (!better(heap[position], heap[child])) {
+                    return;
+                }
+                int temp = heap[child];
+                heap[child] = heap[position];
+                heap[position] = temp;
+                position = child;
+            }
+        }
+    }
+
+    // binary min-heap of ints, used to find the oldest time bucket when expiring them
+    class IntMinHeap {
+        private int[] heap; // heap elements
+        private int size; // number of elements in the heap
+
+        // initialise the heap with a small capacity
+        public IntMinHeap() {
+            heap = new int[16];
+            size = 0;
+        }
+
+        // add an element to the heap
+        public void add(int value) {
+            if (size == heap.length) {
+                int[] newHeap = new int[size * 2];
+
+                System.arraycopy(heap, 0, newHeap, 0, size);
+                heap = newHeap;
+            }
+
+            int position = size++;
+            while (position > 0 && heap[(position - 1) / 2] > value) {
+                heap[position] = heap[(position - 1) / 2];
+                position = (position - 1) / 2;
+            }
+            heap[position] = value;
+        }
+
+        // get the number of elements in the heap
+        public int size() {
+            return size;
+        }
+
+        // get the smallest element; the heap must not be empty
+        public int peek() {
+            return heap[0];
+        }
+
+        // remove and return the smallest element; the heap must not be empty
+        public int poll() {
+            int result = heap[0];
+            int value = heap[--size];
+            int position = 0;
+
+            while (2 * position + 1 < size) {
+                int child = 2 * position + 1;
+                if (child + 1 < size && heap[child + 1] < heap[child]) {
+                    child++;
+                }
+                if (heap[child] >= value) {
+                    break;
+                }
+                heap[position] = heap[child];
+                position = child;
+            }
+            heap[position] = value;
+            return result;
+        }
+    }
+
+    /*
+     * Counts of trending topics per time bucket, used to find the topics trending within a window of time. Every use
+     * of a topic is counted both in the bucket of its hour and in the bucket of its day (days are in UTC), so days are
+     * rolled up as weets are added. Hour buckets are only kept for HOUR_RETENTION hours before the most recent weet,
+     * and day buckets for DAY_RETENTION days; buckets past that are expired incrementally, oldest first, as newer
+     * weets arrive. A window query adds up whole days from day buckets and the hours at its edges from hour buckets,
+     * so it only touches the buckets inside the window, whatever the total number of weets.
+     */
+    class TrendingWindows {
+        private static final long HOUR = 60 * 60 * 1000L; // length of an hour bucket, in milliseconds
+        private static final int HOURS_PER_DAY = 24;
+        private static final int HOUR_RETENTION = 7 * HOURS_PER_DAY; // number of hours for which hour buckets are kept
+        private static final int DAY_RETENTION = 2 * 365; // number of days for which day buckets are kept
+
+        private IntHashMap<TopicCounts> hourBuckets; // topic counts per hour, keyed by hours since the epoch
+        private IntHashMap<TopicCounts> dayBuckets; // topic counts per day, keyed by days since the epoch
+        private IntMinHeap hourKeys; // keys of the hour buckets, so that the oldest can be found when expiring
+        private IntMinHeap dayKeys; // keys of the day buckets, so that the oldest can be found when expiring
+        private int latestHour; // hour of the most recent weet seen so far
+
+        // basic constructor for empty buckets
+        public TrendingWindows() {
+            hourBuckets = new IntHashMap<>();
+            dayBuckets = new IntHashMap<>();
+            hourKeys = new IntMinHeap();
+            dayKeys = new IntMinHeap();
+            latestHour = Integer.MIN_VALUE / 2; // low enough for any real date, without overflowing when retention is subtracted
+        }
+
+        // get the hour (since the epoch) of the given time in milliseconds
+        private int hourOf(long time) {
+            return (int) Math.floorDiv(time, HOUR);
+        }
+
+        // get the day (since the epoch) of the given hour
+        private int dayOf(int hour) {
+            return Math.floorDiv(hour, HOURS_PER_DAY);
+        }
+
+        // count one use of the topic at the given time, then expire the buckets that are now too old
+        public void add(int topic, long time) {
+            int hour = hourOf(time);
+
+            if (hour > latestHour) {
+                latestHour = hour;
+            }
+            if (hour > latestHour - HOUR_RETENTION) {
+                getOrCreate(hourBuckets, hourKeys, hour).add(topic, 1);
+            }
+            if (dayOf(hour) > dayOf(latestHour) - DAY_RETENTION) {
+                getOrCreate(dayBuckets, dayKeys, dayOf(hour)).add(topic, 1);
+            }
+
+            expire(hourBuckets, hourKeys, latestHour - HOUR_RETENTION);
+            expire(dayBuckets, dayKeys, dayOf(latestHour) - DAY_RETENTION);
+        }
+
+        // return the bucket with the given key, creating it if it doesn't exist
+        private TopicCounts getOrCreate(IntHashMap<TopicCounts> buckets, IntMinHeap keys, int key) {
+            TopicCounts bucket = buckets.get(key);
+
+            if (bucket == null) {
+                bucket = new TopicCounts();
+                buckets.put(key, bucket);
+                keys.add(key);
+            }
+            return bucket;
+        }
+
+        // remove all buckets whose keys are not greater than the cutoff
+        private void expire(IntHashMap<TopicCounts> buckets, IntMinHeap keys, int cutoff) {
+            while (keys.size() > 0 && keys.peek() <= cutoff) {
+                buckets.remove(keys.poll());
+            }
+        }
+
+        /*
+         * Return the counts of all topics used from windowStart (inclusive) to windowEnd (exclusive). Counts are kept
+         * per hour, so the window is widened to whole hours; where hour buckets have already expired, the edges of the
+         * window are widened to whole days. The window is first narrowed to the hours that can still have buckets, from
+         * the oldest day kept to the most recent weet, so an open-ended window costs no more than the buckets kept.
+         */
+        public TopicCounts count(long windowStart, long windowEnd) {
+            TopicCounts total = new TopicCounts();
+            if (dayKeys.size() == 0) {
+                return total;
+            }
+
+            // clamp the window while it is still in milliseconds, since hours far from now don't fit in an int
+            long oldestHour = (long) (dayOf(latestHour) - DAY_RETENTION + 1) * HOURS_PER_DAY;
+            long firstHour = Math.min(Math.max(Math.floorDiv(windowStart, HOUR), oldestHour), latestHour + 1L);
+            long lastHour = Math.min(Math.max(Math.floorDiv(windowEnd - 1, HOUR) + 1, oldestHour), latestHour + 1L);
+            if (firstHour >= lastHour) {
+                return total;
+            }
+            int hour = (int) firstHour;
+            int endHour = (int) lastHour;
+
+            while (hour < endHour) {
+                int day = dayOf(hour);
+                boolean wholeDay = hour == day * HOURS_PER_DAY && hour + HOURS_PER_DAY <= endHour;
+
+                if (wholeDay || hour <= latestHour - HOUR_RETENTION) {
+                    TopicCounts bucket = dayBuckets.get(day);
+                    if (bucket != null) {
+                        total.addAll(bucket);
+                    }
+                    hour = (day + 1) * HOURS_PER_DAY;
+                }
+                else {
+                    TopicCounts bucket = hourBuckets.get(hour);
+                    if (bucket != null) {
+                        total.addAll(bucket);
+                    }
+                    hour++;
+                }
+            }
+            return total;
+        }
+    }
+
+    /*
+     * Ranking of trending topics by exponentially decayed counts: a use of a topic is worth half as much every
+     * HALF_LIFE milliseconds. Rather than decaying every score as time passes, each use is weighted by
+     * 2^((time - landmark) / halfLife), which gives the same order as decaying all scores to any common point in time;
+     * when the weights grow too large, all scores are scaled down and the landmark is moved forward. Since scores only
+     * ever grow, they are kept in an indexed max-heap that is updated with a single sift-up per use.
+     */
+    class DecayedTrending {
+        private static final double RESCALE_EXPONENT = 64; // exponent above which scores are scaled down
+
+        private long halfLife; // time after which a use of a topic is worth half as much, in milliseconds
+        private long landmark; // time at which a use of a topic has a weight of 1
+        private boolean started; // whether the landmark has been set, by the first use
+        private double[] scores; // decayed score of each topic, indexed by topic ID
+        private int[] heap; // topic IDs, with the greatest score at the root
+        private int[] positions; // position of each topic in the heap, indexed by topic ID
+        private int size; // number of topics in the heap
+
+        // initialise an empty ranking with the given half-life
+        public DecayedTrending(long halfLife) {
+            this.halfLife = halfLife;
+            scores = new double[16];
+            heap = new int[16];
+            positions = new int[16];
+            size = 0;
+            started = false;
+        }
+
+        // add one use of the topic at the given time; topic IDs must be added in order, starting from 0
+        public void add(int topic, long time) {
+            if (!started) {
+                landmark = time;
+                started = true;
+            }
+
+            double exponent = (double) (time - landmark) / halfLife;
+            if (exponent > RESCALE_EXPONENT) {
+                rescale(time);
+                exponent = 0;
+            }
+
+            if (topic == size) {
+                grow();
+                heap[size] = topic;
+                positions[topic] = size++;
+            }
+            scores[topic] += Math.pow(2, exponent);
+            siftUp(positions[topic]);
+        }
+
+        // move the landmark to the given time, scaling down all scores accordingly
+        private void rescale(long time) {
+            double factor = Math.pow(2, -(double) (time - landmark) / halfLife);
+
+            for (int i = 0; i < size; i++) {
+                scores[i] *= factor;
+            }
+            landmark = time;
+        }
+
+        // make room for one more topic
+        private void grow() {
+            if (size == heap.length) {
+                double[] newScores = new double[size * 2];
+                int[] newHeap = new int[size * 2];
+                int[] newPositions = new int[size * 2];
+
+                System.arraycopy(scores, 0, newScores, 0, size);
+                System.arraycopy(heap, 0, newHeap, 0, size);
+                System.arraycopy(positions, 0, newPositions, 0, size);
+                scores = newScores;
+                heap = newHeap;
+                positions = newPositions;
+            }
+        }
+
+        // move the topic at the given heap position up until its parent has a greater score
+        private void siftUp(int position) {
+            int topic = heap[position];
+
+            while (position > 0 && scores[heap[(position - 1) / 2]] < scores[topic]) {
+                heap[position] = heap[(position - 1) / 2];
+                positions[heap[position]] = position;
+                position = (position - 1) / 2;
+            }
+            heap[position] = topic;
+            positions[topic] = position;
+        }
+
+        /*
+         * Return the IDs of the k topics with the greatest decayed scores, greatest first. The heap itself is left
+         * untouched: a second, small heap of candidate positions holds the children of the topics taken so far, so
+         * only O(k) topics are looked at, in O(k*logk).
+         */
+        public int[] getTop(int k) {
+            int count = k < size ? k : size;
+            int[] top = new int[count];
+            int[] candidates = new int[2 * count + 1]; // heap positions, with the greatest score at the root
+            int candidateCount = 0;
+
+            if (count > 0) {
+                candidates[candidateCount++] = 0;
+            }
+            for (int i = 0; i < count; i++) {
+                int position = candidates[0];
+
+                top[i] = heap[position];
+                candidates[0] = candidates[--candidateCount];
+                siftDownCandidates(candidates, candidateCount);
+                for (int child = 2 * position + 1; child <= 2 * position + 2 && child < size; child++) {
+                    candidates[candidateCount] = child;
+                    siftUpCandidates(candidates, candidateCount++);
+                }
+            }
+            return top;
+        }
+
+        // move the candidate at the given position up until its parent has a greater score
+        private void siftUpCandidates(int[] candidates, int position) {
+            while (position > 0 && scores[heap[candidates[(position - 1) / 2]]] < scores[heap[candidates[position]]]) {
+                int temp = candidates[position];
+                candidates[position] = candidates[(position - 1) / 2];
+                candidates[(position - 1) / 2] = temp;
+                position = (position - 1) / 2;
+            }
+        }
+
+        // move the candidate at the root down until both its children have smaller scores
+        private void siftDownCandidates(int[] candidates, int candidateCount) {
+            int position = 0;
+
+            while (2 * position + 1 < candidateCount) {
+                int child = 2 * position + 1;
+                if (child + 1 < candidateCount && scores[heap[candidates[child + 1]]] > scores[heap[candidates[child]]]) {
+                    child++;
+                }
+                if (scores[heap[candidates[child]]] <= scores[heap[candidates[position]]]) {
+                    return;
+                }
+                int temp = candidates[child];
+                candidates[child] = candidates[position];
+                candidates[position] = temp;
+                position = child;
+            }
+        }
+    }
+
+    /*
+     * Dictionary that interns trending topics into integer IDs, using open addressing with linear probing. Topics can
+     * be looked up directly from a range of characters of a message, so a String is only created the first time a
+     * topic is seen. The hash of every topic is stored along with its ID, to skip most comparisons of characters and
+     * to avoid hashing the topics again when the table doubles in size (whenever it becomes half full).
+     */
+    class TopicDictionary {
+        private int[] ids; // topic IDs, or -1 for empty slots
+        private int[] hashes; // hash of the topic in each slot
+
+        // initialise the table with a power of two capacity, so that the hash can be reduced with a mask
+        public TopicDictionary() {
+            ids = new int[64];
+            hashes = new int[64];
+            for (int i = 0; i < ids.length; i++) {
+                ids[i] = -1;
+            }
+        }
+
+        // compute the hash of the characters of text from start (inclusive) to end (exclusive), as String.hashCode() would
+        private int hash(String text, int start, int end) {
+            int hash = 0;
+            for (int i = start; i < end; i++) {
+                hash = 31 * hash + text.charAt(i);
+            }
+            return hash;
+        }
+
+        // spread the bits of a hash over the table
+        private int slot(int hash, int mask) {
+            hash *= 0x9E3779B9;
+            return (hash ^ (hash >>> 16)) & mask;
+        }
+
+        /*
+         * Return the ID of the topic made of the characters of text from start (inclusive) to end (exclusive); if the
+         * topic has never been seen, it is created and given the next free ID
+         */
+        public int intern(String text, int start, int end) {
+            int hash = hash(text, start, end);
+            int mask = ids.length - 1;
+            int i = slot(hash, mask);
+            int length = end - start;
+
+            while (ids[i] != -1) {
+                String name = topics[ids[i]].getName();
+                if (hashes[i] == hash && name.length() == length && name.regionMatches(0, text, start, length)) {
+                    return ids[i];
+                }
+                i = (i + 1) & mask;
+            }
+
+            TrendingTopic topic = newTopic(text.substring(start, end));
+            ids[i] = topic.getId();
+            hashes[i] = hash;
+            if (topicCount * 2 > ids.length) {
+                resize();
+            }
+            return topic.getId();
+        }
+
+        // double the capacity of the table and re-insert all topics
+        private void resize() {
+            int[] oldIds = ids;
+            int[] oldHashes = hashes;
+            int mask = oldIds.length * 2 - 1;
+
+            ids = new int[oldIds.length * 2];
+            hashes = new int[oldIds.length * 2];
+            for (int i = 0; i < ids.length; i++) {
+                ids[i] = -1;
+            }
+            for (int j = 0; j < oldIds.length; j++) {
+                if (oldIds[j] != -1) {
+                    int i = slot(oldHashes[j], mask);
+                    while (ids[i] != -1) {
+                        i = (i + 1) & mask;
+                    }
+                    ids[i] = oldIds[j];
+                    hashes[i] = oldHashes[j];
+                }
+            }
+        }
+    }
+
+    /*
+     * Table of all stored weets, indexed by an internal document number assigned in insertion order. Document
+     * numbers are what the secondary indexes (such as the trigram index) store, since an int is much cheaper
+     * to keep in a postings list than a reference, and since they increase, postings lists stay sorted for free.
+     */
+    class WeetTable {
+        private Weet[] weets; // weets indexed by document number
+        private long[] times; // dates of the weets in milliseconds, kept separately to avoid pointer chasing when sorting
+        private int size; // number of weets in the table
+
+        // initialise the table with a small capacity; it grows as needed
+        public WeetTable() {
+            weets = new Weet[16];
+            times = new long[16];
+            size = 0;
+        }
+
+        // add a weet at the end of the table and return its document number
+        public int add(Weet weet) {
+            if (size == weets.length) {
+                Weet[] newWeets = new Weet[size * 2];
+                long[] newTimes = new long[size * 2];
+
+                System.arraycopy(weets, 0, newWeets, 0, size);
+                System.arraycopy(times, 0, newTimes, 0, size);
+                weets = newWeets;
+                times = newTimes;
+            }
+            weets[size] = weet;
+            times[size] = weet.getDateWeeted().getTime();
+            return size++;
+        }
+
+        // get the weet with the given document number
+        public Weet getWeet(int doc) {
+            return weets[doc];
+        }
+
+        // get the date (in milliseconds) of the weet with the given document number
+        public long getTime(int doc) {
+            return times[doc];
+        }
+
+        // get the number of weets in the table
+        public int size() {
+            return size;
+        }
+
+        /*
+         * Sort document numbers by date, starting with the most recent; weets with equal dates are kept in the
+         * order in which they were added, which is the same order the date tree returns them in.
+         */
+        public void sortByDate(int[] docs, int left, int right) {
+            int index = partition(docs, left, right);
+
+            if (left < index - 1) {
+                sortByDate(docs, left, index - 1);
+            }
+            if (index < right) {
+                sortByDate(docs, index, right);
+            }
+        }
+
+        // return true if document a should come before document b in a list sorted by date
+        public boolean before(int a, int b) {
+            if (times[a] != times[b]) {
+                return times[a] > times[b];
+            }
+            return a < b;
+        }
+
+        private int partition(int[] docs, int left, int right) {
+            int i = left, j = right;
+            int temp;
+            int pivot = docs[(left + right) / 2];
+
+            while (i <= j) {
+                while (before(docs[i], pivot)) {
+                    i++;
+                }
+                while (before(pivot, docs[j])) {
+                    j--;
+                }
+                if (i <= j) {
+                    temp = docs[i];
+                    docs[i++] = docs[j];
+                    docs[j--] = temp;
+                }
+            }
+            return i;
+        }
+    }
+
+    // growable list of document numbers, in increasing order, of the weets that contain a given trigram
+    class Postings {
+        private int[] docs; // document numbers
+        private int size; // number of document numbers in the list
+
+        // initialise the list with a small capacity, since most trigrams are rare
+        public Postings() {
+            docs = new int[4];
+            size = 0;
+        }
+
+        // append a document number; the same document is only stored once, even if the trigram repeats
+        public void add(int doc) {
+            if (size > 0 && docs[size - 1] == doc) {
+                return;
+            }
+            if (size == docs.length) {
+                int[] newDocs = new int[size * 2];
+
+                System.arraycopy(docs, 0, newDocs, 0, size);
+                docs = newDocs;
+            }
+            docs[size++] = doc;
+        }
+
+        // get the number of documents in the list
+        public int size() {
+            return size;
+        }
+    }
+
+    /*
+     * Inverted index from trigrams (every three consecutive characters of a message) to the weets containing
+     * them. A weet can only contain a query of length 3 or more if it contains every trigram of the query, so
+     * intersecting the postings lists of those trigrams gives a small set of candidates that then only need
+     * to be checked with contains(). Trigrams are packed into a long (16 bits per character) and stored in an
+     * open addressing hash table with linear probing, which is resized whenever it becomes half full.
+     */
+    class TrigramIndex {
+        private long[] keys; // packed trigrams
+        private Postings[] values; // postings list of each trigram; a null value marks an empty slot
+        private int size; // number of distinct trigrams
+
+        // initialise the table with a power of two capacity, so that the hash can be reduced with a mask
+        public TrigramIndex() {
+            keys = new long[1024];
+            values = new Postings[1024];
+            size = 0;
+        }
+
+        // pack the three characters starting at position i into a long
+        private long trigram(String text, int i) {
+            return ((long) text.charAt(i) << 32) | ((long) text.charAt(i + 1) << 16) | text.charAt(i + 2);
+        }
+
+        // spread the bits of a packed trigram over the table
+        private int slot(long key, int mask) {
+            key *= 0x9E3779B97F4A7C15L;
+            return (int) (key ^ (key >>> 32)) & mask;
+        }
+
+        // return the postings list of the given trigram, or null if no weet contains it
+        public Postings get(long key) {
+            int mask = keys.length - 1;
+            int i = slot(key, mask);
+
+            while (values[i] != null) {
+                if (keys[i] == key) {
+                    return values[i];
+                }
+                i = (i + 1) & mask;
+            }
+            return null;
+        }
+
+        // add the document to the postings lists of all trigrams in its message
+        public void add(int doc, String message) {
+            for (int i = 0; i + 2 < message.length(); i++) {
+                getOrCreate(trigram(message, i)).add(doc);
+            }
+        }
+
+        // return the postings list of the given trigram, creating an empty one if it doesn't exist
+        private Postings getOrCreate(long key) {
+            int mask = keys.length - 1;
+            int i = slot(key, mask);
+
+            while (values[i] != null) {
+                if (keys[i] == key) {
+                    return values[i];
+                }
+                i = (i + 1) & mask;
+            }
+
+            Postings postings = new Postings();
+            keys[i] = key;
+            values[i] = postings;
+            if (++size * 2 > keys.length) {
+                resize();
+            }
+            return postings;
+        }
+
+        // double the capacity of the table and re-insert all trigrams
+        private void resize() {
+            long[] oldKeys = keys;
+            Postings[] oldValues = values;
+            int mask = oldKeys.length * 2 - 1;
+
+            keys = new long[oldKeys.length * 2];
+            values = new Postings[oldKeys.length * 2];
+            for (int j = 0; j < oldKeys.length; j++) {
+                if (oldValues[j] != null) {
+                    int i = slot(oldKeys[j], mask);
+                    while (values[i] != null) {
+                        i = (i + 1) & mask;
+                    }
+                    keys[i] = oldKeys[j];
+                    values[i] = oldValues[j];
+                }
+            }
+        }
+
+        /*
+         * Return the document numbers of the weets whose messages contain the query, sorted by date starting with
+         * the most recent, or null if there are none. The query must be at least 3 characters long.
+         */
+        public int[] search(String query, WeetTable table) {
+            int trigramCount = query.length() - 2;
+            Postings[] lists = new Postings[trigramCount];
+
+            // if any trigram of the query is missing from the index, no weet can contain the query
+            for (int i = 0; i < trigramCount; i++) {
+                lists[i] = get(trigram(query, i));
+                if (lists[i] == null) {
+                    return null;
+                }
+            }
+
+            // start from the shortest postings list, so that the candidate set is as small as possible from the start
+            int shortest = 0;
+            for (int i = 1; i < trigramCount; i++) {
+                if (lists[i].size() < lists[shortest].size()) {
+                    shortest = i;
+                }
+            }
+
+            int[] candidates = new int[lists[shortest].size()];
+            int candidateCount = lists[shortest].size();
+            System.arraycopy(lists[shortest].docs, 0, candidates, 0, candidateCount);
+
+            for (int i = 0; i < trigramCount && candidateCount > 0; i++) {
+                if (i != shortest) {
+                    candidateCount = intersect(candidates, candidateCount, lists[i]);
+                }
+            }
+
+            // the trigrams don't have to be consecutive in the weet, so every candidate must still be verified
+            int matchCount = 0;
+            for (int i = 0; i < candidateCount; i++) {
+                if (table.getWeet(candidates[i]).getMessage().contains(query)) {
+                    candidates[matchCount++] = candidates[i];
+                }
+            }
+
+            if (matchCount == 0) {
+                return null;
+            }
+
+            int[] matches = new int[matchCount];
+            System.arraycopy(candidates, 0, matches, 0, matchCount);
+            table.sortByDate(matches, 0, matchCount - 1);
+            return matches;
+        }
+
+        /*
+         * Keep only the candidates that also appear in the given postings list, and return how many are left. Both
+         * lists are sorted, so the postings list is searched with galloping (exponential followed by binary search)
+         * from where the previous candidate was found, which is fast when the candidate list is much shorter.
+         */
+        private int intersect(int[] candidates, int candidateCount, Postings postings) {
+            int[] docs = postings.docs;
+            int size = postings.size();
+            int position = 0;
+            int kept = 0;
+
+            for (int i = 0; i < candidateCount && position < size; i++) {
+                int doc = candidates[i];
+
+                // gallop until the range (position, position + step] contains a value not smaller than doc
+                int step = 1;
+                while (position + step < size && docs[position + step] < doc) {
+                    step *= 2;
+                }
+                int low = position;
+                int high = position + step < size ? position + step : size - 1;
+
+                // binary search for the first value not smaller than doc
+                while (low < high) {
+                    int middle = (low + high) >>> 1;
+                    if (docs[middle] < doc) {
+                        low = middle + 1;
+                    }
+                    else {
+                        high = middle;
+                    }
+                }
+
+                position = low;
+                if (docs[position] == doc) {
+                    candidates[kept++] = doc;
+                }
+                else if (docs[position] < doc) {
+                    // every remaining candidate is greater than the whole postings list
+                    break;
+                }
             }
-            if (isRed(h.left) && isRed(h.right)) {
-                flipColours(h);
+            return kept;
+        }
+    }
+
+    /*
+     * List of document numbers kept in date order, used for the per-user and per-day indexes. Elements are stored
+     * from the oldest to the most recent weet (equal dates in reverse insertion order), so that weets added in date
+     * order, which is by far the most common case, are simply appended; reading the list backwards gives the same
+     * order as the date tree.
+     */
+    class DocList {
+        private int[] docs; // document numbers
+        private int size; // number of document numbers in the list
+
+        // initialise the list with a small capacity
+        public DocList() {
+            docs = new int[4];
+            size = 0;
+        }
+
+        // insert a document number at its position in date order
+        public void add(int doc, WeetTable table) {
+            if (size == docs.length) {
+                int[] newDocs = new int[size * 2];
+
+                System.arraycopy(docs, 0, newDocs, 0, size);
+                docs = newDocs;
             }
 
-            return h;
+            // binary search for the position right after all weets that the new weet comes before in date order
+            int low = 0, high = size;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (table.before(doc, docs[middle])) {
+                    low = middle + 1;
+                }
+                else {
+                    high = middle;
+                }
+            }
+
+            System.arraycopy(docs, low, docs, low + 1, size - low);
+            docs[low] = doc;
+            size++;
         }
 
-        // check if Node x is red
-        private boolean isRed(Node x) {
-            if (x == null) {
+        // get the number of documents in the list
+        public int size() {
+            return size;
+        }
+
+        // get the document number at the given position, counting from the oldest weet
+        public int get(int index) {
+            return docs[index];
+        }
+
+        // count the weets in the list posted strictly before the given time, with a binary search
+        public int countBefore(long time, WeetTable table) {
+            int low = 0, high = size;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (table.getTime(docs[middle]) < time) {
+                    low = middle + 1;
+                }
+                else {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+
+        // count the weets in the list posted before or on the given time
+        public int countUpTo(long time, WeetTable table) {
+            if (time == Long.MAX_VALUE) {
+                return size;
+            }
+            return countBefore(time + 1, table);
+        }
+
+        /*
+         * Return up to limit weets, sorted by date starting with the most recent, skipping the first offset of them;
+         * only the requested weets are visited
+         */
+        public Weet[] getWeets(int offset, int limit, WeetTable table) {
+            int count = size - offset;
+            if (count > limit) {
+                count = limit;
+            }
+            if (count < 0) {
+                count = 0;
+            }
+
+            Weet[] result = new Weet[count];
+            for (int i = 0; i < count; i++) {
+                result[i] = table.getWeet(docs[size - 1 - offset - i]);
+            }
+            return result;
+        }
+    }
+
+    /*
+     * Lazy k-way merge of the date-ordered weet lists of many users, used to build home timelines. Every list has a
+     * cursor, pointing at its most recent weet that hasn't been returned yet, and a binary heap of cursors gives the
+     * list whose next weet is the most recent of all; each weet taken costs O(logf) for f lists, and lists whose weets
+     * are never reached are never gone through.
+     */
+    class TimelineMerge {
+        private DocList[] lists; // date-ordered weet lists being merged
+        private int[] positions; // position in each list of its next weet, counting from the oldest; -1 when used up
+        private int[] heap; // indices into lists and positions, ordered by the date of the next weet of each list
+        private int size; // number of cursors in the heap
+        private WeetTable table; // table of the weets in the lists, to compare their dates
+
+        // initialise a merge of at most capacity lists, whose weets are in the given table
+        public TimelineMerge(int capacity, WeetTable table) {
+            lists = new DocList[capacity];
+            positions = new int[capacity];
+            heap = new int[capacity];
+            size = 0;
+            this.table = table;
+        }
+
+        /*
+         * add a list to the merge, starting from the weet at the given position (counting from the oldest weet) and
+         * going back in time; nothing is added if the position is negative. Once all lists are added, heapify() must
+         * be called before any weet is taken.
+         */
+        public void add(DocList list, int position) {
+            if (position >= 0) {
+                lists[size] = list;
+                positions[size] = position;
+                heap[size] = size;
+                size++;
+            }
+        }
+
+        // turn the cursors added so far into a heap, bottom-up in O(f)
+        public void heapify() {
+            for (int i = size / 2 - 1; i >= 0; i--) {
+                siftDown(i);
+            }
+        }
+
+        // return true if there are no weets left to take
+        public boolean isEmpty() {
+            return size == 0;
+        }
+
+        // get the document number of the most recent weet left; the merge must not be empty
+        public int peek() {
+            return next(heap[0]);
+        }
+
+        // remove and return the document number of the most recent weet left; the merge must not be empty
+        public int poll() {
+            int cursor = heap[0];
+            int doc = lists[cursor].get(positions[cursor]--);
+
+            // a list that is used up leaves the heap, otherwise its next weet is older, so it can only sink
+            if (positions[cursor] < 0) {
+                heap[0] = heap[--size];
+            }
+            siftDown(0);
+            return doc;
+        }
+
+        // get the document number of the next weet of a cursor
+        private int next(int cursor) {
+            return lists[cursor].get(positions[cursor]);
+        }
+
+        private void siftDown(int position) {
+            int cursor = heap[position];
+
+            while (2 * position + 1 < size) {
+                int child = 2 * position + 1;
+                if (child + 1 < size && table.before(next(heap[child + 1]), next(heap[child]))) {
+                    child++;
+                }
+                if (!table.before(next(heap[child]), next(cursor))) {
+                    break;
+                }
+                heap[position] = heap[child];
+                position = child;
+            }
+            heap[position] = cursor;
+        }
+    }
+
+    /*
+     * Bounded home timeline of one user, filled by fan-out on write: the most recent weets pushed to it are kept in a
+     * ring buffer, in date order from the oldest, so pushing a weet newer than all the others (by far the most common
+     * case) costs O(1), and the oldest weet is dropped once the buffer is full. Buffers are also linked into the LRU
+     * list of the TimelineCache that holds them.
+     */
+    class TimelineBuffer {
+        private int uid; // ID of the user whose timeline this is
+        private int[] docs; // document numbers of the weets, in date order from docs[start], wrapping around
+        private int start; // position of the oldest weet in docs
+        private int size; // number of weets in the buffer
+        private boolean complete; // whether no weet was ever dropped, so that the buffer holds the whole timeline
+        private int version; // follows version of the user when the buffer was filled, see FollowerStore.getFollowsVersion()
+        private TimelineBuffer newer; // buffer read more recently than this one, or null
+        private TimelineBuffer older; // buffer read less recently than this one, or null
+        private int[] pulledFollows; // users followed whose weets are merged when the timeline is read
+        private int pulledCount; // number of users whose weets are merged when it was found, see TimelineCache
+
+        // initialise an empty buffer of the given capacity for the user with ID uid
+        public TimelineBuffer(int uid, int capacity, int version) {
+            this.uid = uid;
+            docs = new int[capacity];
+            start = 0;
+            size = 0;
+            complete = true;
+            this.version = version;
+            pulledFollows = null;
+            pulledCount = -1;
+        }
+
+        // get the number of weets in the buffer
+        public int size() {
+            return size;
+        }
+
+        // get the document number at the given position, counting from the oldest weet
+        public int get(int index) {
+            return docs[(start + index) % docs.length];
+        }
+
+        // get the follows version of the user when the buffer was filled
+        public int getVersion() {
+            return version;
+        }
+
+        // return true if no weet was ever dropped from the buffer
+        public boolean isComplete() {
+            return complete;
+        }
+
+        // record that weets were left out when the buffer was filled
+        public void markIncomplete() {
+            complete = false;
+        }
+
+        /*
+         * get the users followed whose weets are merged when the timeline is read, or null if they must be found again
+         * because more users' weets are merged than when they were found
+         */
+        public int[] getPulledFollows(int pulledCount) {
+            return pulledCount == this.pulledCount ? pulledFollows : null;
+        }
+
+        // set the users followed whose weets are merged when the timeline is read, out of pulledCount such users
+        public void setPulledFollows(int[] pulledFollows, int pulledCount) {
+            this.pulledFollows = pulledFollows;
+            this.pulledCount = pulledCount;
+        }
+
+        // insert a weet at its position in date order, dropping the oldest weet if the buffer is full
+        public void add(int doc, WeetTable table) {
+            if (size == docs.length) {
+                complete = false;
+                if (!table.before(doc, get(0))) {
+                    // the weet is older than all of the buffer, so it would be dropped straight away
+                    return;
+                }
+                start = (start + 1) % docs.length;
+                size--;
+            }
+
+            int i = size++;
+            while (i > 0 && table.before(get(i - 1), doc)) {
+                docs[(start + i) % docs.length] = get(i - 1);
+                i--;
+            }
+            docs[(start + i) % docs.length] = doc;
+        }
+
+        // count the weets in the buffer posted before or on the given time, with a binary search
+        public int countUpTo(long time, WeetTable table) {
+            int low = 0, high = size;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (table.getTime(get(middle)) <= time) {
+                    low = middle + 1;
+                }
+                else {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+    }
+
+    /*
+     * Home timelines of the users who read them most recently, filled by fan-out on write. Buffers are created when a
+     * user reads their timeline, and only existing buffers are pushed to, so users who never read theirs cost nothing.
+     * The buffers are kept in an LRU list, and the least recently read one is evicted whenever a new one would take
+     * the total number of weets the buffers can hold over the budget.
+     */
+    class TimelineCache {
+        private IntHashMap<TimelineBuffer> buffers; // timeline buffers, keyed by user ID
+        private TimelineBuffer newest; // buffer read most recently, or null
+        private TimelineBuffer oldest; // buffer read least recently, or null
+        private int bufferSize; // number of weets each buffer can hold
+        private int maxBuffers; // number of buffers that fit in the budget
+        private int followerThreshold; // number of followers above which a user's weets aren't pushed
+        private IntHashMap<Boolean> pulledAuthors; // users whose weets are merged when timelines are read instead
+
+        // initialise an empty cache of buffers of bufferSize weets, holding at most budget weets in total
+        public TimelineCache(int bufferSize, int followerThreshold, int budget) {
+            this.bufferSize = bufferSize;
+            maxBuffers = Math.max(1, budget / bufferSize);
+            this.followerThreshold = followerThreshold;
+            clear();
+        }
+
+        // remove all buffers, and forget whose weets are merged when timelines are read
+        public void clear() {
+            buffers = new IntHashMap<>();
+            newest = null;
+            oldest = null;
+            pulledAuthors = new IntHashMap<>();
+        }
+
+        // get the buffer of a user without marking it as read, or null if there is none
+        public TimelineBuffer peek(int uid) {
+            return buffers.get(uid);
+        }
+
+        // get the buffer of a user and mark it as the one read most recently, or null if there is none
+        public TimelineBuffer get(int uid) {
+            TimelineBuffer buffer = buffers.get(uid);
+
+            if (buffer != null && buffer != newest) {
+                unlink(buffer);
+                link(buffer);
+            }
+            return buffer;
+        }
+
+        // create an empty buffer for a user, replacing any buffer they had, and evicting the least recently read ones
+        public TimelineBuffer create(int uid, int version) {
+            TimelineBuffer old = buffers.get(uid);
+            if (old != null) {
+                unlink(old);
+                buffers.remove(uid);
+            }
+            while (buffers.size() >= maxBuffers) {
+                TimelineBuffer evicted = oldest;
+                unlink(evicted);
+                buffers.remove(evicted.uid);
+            }
+
+            TimelineBuffer buffer = new TimelineBuffer(uid, bufferSize, version);
+            buffers.put(uid, buffer);
+            link(buffer);
+            return buffer;
+        }
+
+        // return true if the weets of a user are merged when timelines are read, rather than pushed
+        public boolean isPulled(int uid) {
+            return pulledAuthors.get(uid) != null;
+        }
+
+        /*
+         * mark a user's weets as merged when timelines are read from now on; this can't be undone, so that the weets
+         * they posted in the meantime are never missed if they lose followers
+         */
+        public void setPulled(int uid) {
+            pulledAuthors.put(uid, Boolean.TRUE);
+        }
+
+        // get the number of users whose weets are merged when timelines are read
+        public int getPulledCount() {
+            return pulledAuthors.size();
+        }
+
+        // get the number of weets each buffer can hold
+        public int getBufferSize() {
+            return bufferSize;
+        }
+
+        // get the number of followers above which a user's weets aren't pushed
+        public int getFollowerThreshold() {
+            return followerThreshold;
+        }
+
+        // add a buffer at the most recent end of the LRU list
+        private void link(TimelineBuffer buffer) {
+            buffer.newer = null;
+            buffer.older = newest;
+            if (newest != null) {
+                newest.newer = buffer;
+            }
+            else {
+                oldest = buffer;
+            }
+            newest = buffer;
+        }
+
+        // remove a buffer from the LRU list
+        private void unlink(TimelineBuffer buffer) {
+            if (buffer.newer != null) {
+                buffer.newer.older = buffer.older;
+            }
+            else {
+                newest = buffer.older;
+            }
+            if (buffer.older != null) {
+                buffer.older.newer = buffer.newer;
+            }
+            else {
+                oldest = buffer.newer;
+            }
+        }
+    }
+
+    /*
+     * Hash map from weet IDs to document numbers, using open addressing with linear probing; used for getWeet() and
+     * to check whether an ID is already taken in addWeet(). Both keys and values are kept in primitive arrays, so a
+     * weet only costs two ints in the table (document numbers are stored plus one, so that zero marks an empty slot),
+     * and the table doubles in size whenever it becomes three quarters full.
+     */
+    class WeetIdMap {
+        private int[] keys; // weet IDs
+        private int[] docs; // document number of each weet ID plus one; zero marks an empty slot
+        private int size; // number of IDs in the map
+
+        // initialise the table with a power of two capacity, so that the hash can be reduced with a mask
+        public WeetIdMap() {
+            keys = new int[16];
+            docs = new int[16];
+            size = 0;
+        }
+
+        // spread the bits of an ID over the table
+        private int slot(int key, int mask) {
+            int hash = key * 0x9E3779B9;
+            return (hash ^ (hash >>> 16)) & mask;
+        }
+
+        // return the document number of the weet with the given ID, or -1 if there is none
+        public int get(int key) {
+            int mask = keys.length - 1;
+            int i = slot(key, mask);
+
+            while (docs[i] != 0) {
+                if (keys[i] == key) {
+                    return docs[i] - 1;
+                }
+                i = (i + 1) & mask;
+            }
+            return -1;
+        }
+
+        // associate a document number with an ID that isn't in the map yet
+        public void put(int key, int doc) {
+            int mask = keys.length - 1;
+            int i = slot(key, mask);
+
+            while (docs[i] != 0) {
+                i = (i + 1) & mask;
+            }
+            keys[i] = key;
+            docs[i] = doc + 1;
+            if (++size * 4 > keys.length * 3) {
+                resize();
+            }
+        }
+
+        // get the number of IDs in the map
+        public int size() {
+            return size;
+        }
+
+        // double the capacity of the table and re-insert all IDs
+        private void resize() {
+            int[] oldKeys = keys;
+            int[] oldDocs = docs;
+            int mask = oldKeys.length * 2 - 1;
+
+            keys = new int[oldKeys.length * 2];
+            docs = new int[oldKeys.length * 2];
+            for (int j = 0; j < oldKeys.length; j++) {
+                if (oldDocs[j] != 0) {
+                    int i = slot(oldKeys[j], mask);
+                    while (docs[i] != 0) {
+                        i = (i + 1) & mask;
+                    }
+                    keys[i] = oldKeys[j];
+                    docs[i] = oldDocs[j];
+                }
+            }
+        }
+    }
+
+    /*
+     * Hash map from int keys to objects, using open addressing with linear probing. Keys are kept in a primitive
+     * array, so no Integer objects are created, and the table doubles in size whenever it becomes half full, which
+     * keeps probe sequences short however many keys are added.
+     */
+    class IntHashMap<V> {
+        private int[] keys; // keys of the map
+        private V[] values; // value of each key; a null value marks an empty slot
+        private int size; // number of keys in the map
+
+        // initialise the table with a power of two capacity, so that the hash can be reduced with a mask
+        @SuppressWarnings("unchecked") // a generic array can only be created as an Object array
+        public IntHashMap() {
+            keys = new int[16];
+            values = (V[]) new Object[16];
+            size = 0;
+        }
+
+        // spread the bits of a key over the table
+        private int slot(int key, int mask) {
+            int hash = key * 0x9E3779B9;
+            return (hash ^ (hash >>> 16)) & mask;
+        }
+
+        // return the value associated with the key, or null if the key isn't in the map
+        public V get(int key) {
+            int mask = keys.length - 1;
+            int i = slot(key, mask);
+
+            while (values[i] != null) {
+                if (keys[i] == key) {
+                    return values[i];
+                }
+                i = (i + 1) & mask;
+            }
+            return null;
+        }
+
+        // associate a (non-null) value with the key, replacing any previous value
+        public void put(int key, V value) {
+            int mask = keys.length - 1;
+            int i = slot(key, mask);
+
+            while (values[i] != null) {
+                if (keys[i] == key) {
+                    values[i] = value;
+                    return;
+                }
+                i = (i + 1) & mask;
+            }
+
+            keys[i] = key;
+            values[i] = value;
+            if (++size * 2 > keys.length) {
+                resize();
+            }
+        }
+
+        // remove the key from the map, if it is there
+        public void remove(int key) {
+            int mask = keys.length - 1;
+            int i = slot(key, mask);
+
+            while (values[i] != null && keys[i] != key) {
+                i = (i + 1) & mask;
+            }
+            if (values[i] == null) {
+                return;
+            }
+            values[i] = null;
+            size--;
+
+            // move back any following keys that would no longer be reachable from their slot
+            int j = (i + 1) & mask;
+            while (values[j] != null) {
+                int home = slot(keys[j], mask);
+                if (((j - home) & mask) >= ((j - i) & mask)) {
+                    keys[i] = keys[j];
+                    values[i] = values[j];
+                    values[j] = null;
+                    i = j;
+                }
+                j = (j + 1) & mask;
+            }
+        }
+
+        // get the number of keys in the map
+        public int size() {
+            return size;
+        }
+
+        // double the capacity of the table and re-insert all keys
+        @SuppressWarnings("unchecked")
+        private void resize() {
+            int[] oldKeys = keys;
+            V[] oldValues = values;
+            int mask = oldKeys.length * 2 - 1;
+
+            keys = new int[oldKeys.length * 2];
+            values = (V[]) new Object[oldKeys.length * 2];
+            for (int j = 0; j < oldKeys.length; j++) {
+                if (oldValues[j] != null) {
+                    int i = slot(oldKeys[j], mask);
+                    while (values[i] != null) {
+                        i = (i + 1) & mask;
+                    }
+                    keys[i] = oldKeys[j];
+                    values[i] = oldValues[j];
+                }
+            }
+        }
+    }
+
+    private WeetIdMap weetIds; // store the document number of every weet, keyed by weet ID
+    private DateRedBlackBST weetDateTree; // store weets in a binary search tree ordered by date
+    private TopicDictionary topicDictionary; // store the ID of each trending topic, for quick lookups by name
+    private WeetTable weetTable; // store weets by document number, for the secondary indexes below
+    private TrigramIndex trigramIndex; // store the weets containing each trigram, for substring queries
+    private IntHashMap<DocList> userTimelines; // store each user's weets in date order, keyed by user ID
+    private IntHashMap<DocList> weetsByDay; // store each day's weets in date order, keyed by UTC epoch day
+    private TrendingRanking trendingRanking; // store trending topics ranked by number of occurences
+    private TrendingTopic[] topics; // store trending topics by ID
+    private int topicCount; // number of different trending topics used so far
+    private TrendingWindows trendingWindows; // store the number of uses of each trending topic per hour and per day
+    private DecayedTrending decayedTrending; // store trending topics ranked by exponentially decayed number of uses
+    private FollowerStore followerStore; // store of who follows whom, for home timelines; null until one is set
+    private TimelineCache timelineCache; // home timelines filled by fan-out on write; null unless it was enabled
+    private Lock treeReadLock; // held while reading weetDateTree, by any number of threads at once
+    private Lock treeWriteLock; // held while changing weetDateTree, by one thread at a time and while nobody reads it
+    private Lock indexReadLock; // held while reading the other data structures, by any number of threads at once
+    private Lock indexWriteLock; // held while changing the other data structures, by one thread at a time
+
+    // addWeets() only rebuilds the trees when adding more than 1/SMALL_BATCH_FACTOR times as many weets as are stored
+    private static final int SMALL_BATCH_FACTOR = 16;
+
+    // length of a day bucket of weetsByDay, in milliseconds
+    private static final long DAY = 24 * 60 * 60 * 1000L;
+
+    // number of weets kept in each home timeline buffer, unless another number is given to enableTimelineCache()
+    private static final int DEFAULT_TIMELINE_BUFFER_SIZE = 800;
+
+    // number of followers above which a user's weets are merged when timelines are read, instead of being pushed
+    private static final int DEFAULT_FAN_OUT_THRESHOLD = 10000;
+
+    // total number of weets the home timeline buffers can hold, unless another number is given to enableTimelineCache()
+    private static final int DEFAULT_TIMELINE_CACHE_BUDGET = 1 << 22;
+
+    // half-life of a use of a topic in the decayed trending ranking, unless another one is given to the constructor
+    private static final long DEFAULT_TRENDING_HALF_LIFE = 6 * 60 * 60 * 1000L;
+
+    // initialise the data structures
+    public WeetStore() {
+        this(DEFAULT_TRENDING_HALF_LIFE);
+    }
+
+    // initialise the data structures, with the given half-life (in milliseconds) for the decayed trending ranking
+    public WeetStore(long trendingHalfLife) {
+        weetIds = new WeetIdMap();
+        weetDateTree = new DateRedBlackBST();
+        topicDictionary = new TopicDictionary();
+        weetTable = new WeetTable();
+        trigramIndex = new TrigramIndex();
+        userTimelines = new IntHashMap<>();
+        weetsByDay = new IntHashMap<>();
+        trendingRanking = new TrendingRanking();
+        topics = new TrendingTopic[16];
+        topicCount = 0;
+        trendingWindows = new TrendingWindows();
+        decayedTrending = new DecayedTrending(trendingHalfLife);
+
+        // the date tree has a lock of its own, so that rebuilding it doesn't hold up lookups in the other indexes
+        ReentrantReadWriteLock treeLock = new ReentrantReadWriteLock();
+        ReentrantReadWriteLock indexLock = new ReentrantReadWriteLock();
+        treeReadLock = treeLock.readLock();
+        treeWriteLock = treeLock.writeLock();
+        indexReadLock = indexLock.readLock();
+        indexWriteLock = indexLock.writeLock();
+    }
+
+    // add a weet to weetDateTree and to all the indexes, if its ID isn't taken yet
+    public boolean addWeet(Weet weet) {
+        indexWriteLock.lock();
+        try {
+            // use weetIds to check if a weet with the same ID already exists
+            if (weetIds.get(weet.getId()) >= 0) {
                 return false;
             }
-            return x.colour == RED;
+            indexWeet(weet);
+
+            // the tree is locked before the indexes are released, so weets go into both in the same order
+            treeWriteLock.lock();
+        }
+        finally {
+            indexWriteLock.unlock();
+        }
+        try {
+            weetDateTree.add(weet);
+        }
+        finally {
+            treeWriteLock.unlock();
         }
 
-        // rotate right to balance tree
-        private Node rotateRight(Node h) {
-            Node x = h.left;
+        return true;
+    }
 
-            h.left = x.right;
-            x.right = h;
-            x.colour = h.colour;
-            h.colour = RED;
+    /*
+     * Add many weets at once, as if addWeet() was called for each of them in order, and return the number of weets
+     * added. Instead of inserting the weets into the date tree one by one, they are sorted once, merged with the weets
+     * already in the tree, and the tree is rebuilt bottom-up, in O(n + m*logm) for m new weets, which is much faster
+     * when loading large numbers of weets. If only a few weets are added to a large store, they are simply added one by one.
+     */
+    public int addWeets(Weet[] weets) {
+        int added = 0;
+        int[] order = new int[weets.length];
+
+        indexWriteLock.lock();
+        try {
+            if ((long) weets.length * SMALL_BATCH_FACTOR < weetIds.size()) {
+                for (int i = 0; i < weets.length; i++) {
+                    if (weets[i] != null && addWeet(weets[i])) {
+                        added++;
+                    }
+                }
+                return added;
+            }
 
-            return x;
+            /*
+             * add the weets whose IDs aren't taken to the indexes, in the given order, and collect them in reverse
+             * order; weets with equal dates must be in reverse order of addition in the date tree, as addWeet() would
+             * have left them, so they go before older weets with the same date after the (stable) sort by date
+             */
+            for (int i = 0; i < weets.length; i++) {
+                if (weets[i] != null && weetIds.get(weets[i].getId()) < 0) {
+                    indexWeet(weets[i]);
+                    order[weets.length - 1 - added++] = i;
+                }
+            }
+            treeWriteLock.lock();
         }
+        finally {
+            indexWriteLock.unlock();
+        }
+        try {
+            mergeIntoTree(weets, order, added);
+        }
+        finally {
+            treeWriteLock.unlock();
+        }
+        return added;
+    }
 
-        // rotate left to balance tree
-        private Node rotateLeft(Node h) {
-            Node x = h.right;
+    /*
+     * merge the added weets, whose indices are in the last added positions of order, in reverse order of addition,
+     * with the weets in weetDateTree, and rebuild the tree from all of them
+     */
+    private void mergeIntoTree(Weet[] weets, int[] order, int added) {
+        System.arraycopy(order, weets.length - added, order, 0, added);
+        sortIndices(weets, order, added);
+
+        Weet[] newest = weetDateTree.getWeetList();
+        int existing = newest == null ? 0 : newest.length;
+        Weet[] byDate = new Weet[existing + added];
+        int i = existing - 1;
+        int j = 0;
+        for (int k = 0; k < byDate.length; k++) {
+            if (j < added && (i < 0 || weets[order[j]].getDateWeeted().compareTo(newest[i].getDateWeeted()) <= 0)) {
+                byDate[k] = weets[order[j++]];
+            }
+            else {
+                byDate[k] = newest[i--];
+            }
+        }
 
-            h.right = x.left;
-            x.left = h;
-            x.colour = h.colour;
-            h.colour = RED;
+        weetDateTree.build(byDate);
+    }
 
-            return x;
+    // add a weet whose ID isn't taken to weetTable, weetIds and all the other indexes based on weetTable
+    private void indexWeet(Weet weet) {
+        int doc = weetTable.add(weet);
+        weetIds.put(weet.getId(), doc);
+        trigramIndex.add(doc, weet.getMessage());
+
+        DocList timeline = userTimelines.get(weet.getUserId());
+        if (timeline == null) {
+            timeline = new DocList();
+            userTimelines.put(weet.getUserId(), timeline);
         }
+        timeline.add(doc, weetTable);
 
-        // flip the colours of the node and its children; called only when node is black and children are red
-        private void flipColours(Node h) {
-            h.colour = RED;
-            h.left.colour = BLACK;
-            h.right.colour = BLACK;
+        int day = (int) Math.floorDiv(weetTable.getTime(doc), DAY);
+        DocList dayList = weetsByDay.get(day);
+        if (dayList == null) {
+            dayList = new DocList();
+            weetsByDay.put(day, dayList);
         }
+        dayList.add(doc, weetTable);
 
-        // return the given trending topic, or null if it doesn't exist
-        public TrendingTopic getTrendingTopic(String text) {
-            return getTrendingTopic(root, text);
+        addTrendingTopics(weet.getMessage(), weetTable.getTime(doc));
+        if (timelineCache != null && followerStore != null) {
+            fanOut(doc);
         }
+    }
 
-        // search in the subtree given by node h for the given trending topic
-        public TrendingTopic getTrendingTopic(Node h, String text) {
-            // if nothing was found, return null
-            if (h == null) {
-                return null;
-            }
+    /*
+     * push a new weet to the home timeline buffers of the author's followers who have one, unless the author has more
+     * than the threshold number of followers, in which case their weets are merged when timelines are read instead
+     */
+    private void fanOut(int doc) {
+        int author = weetTable.getWeet(doc).getUserId();
 
-            int comparison = text.compareTo(h.trending.getName());
+        if (timelineCache.isPulled(author)) {
+            return;
+        }
+        if (followerStore.getNumFollowers(author) > timelineCache.getFollowerThreshold()) {
+            timelineCache.setPulled(author);
+            return;
+        }
 
-            // compare the topic to the current node's topic to determine what to do
-            if (comparison == 0) {
-                return h.trending;
+        int[] followers = followerStore.getFollowers(author);
+        if (followers == null) {
+            return;
+        }
+        for (int i = 0; i < followers.length; i++) {
+            TimelineBuffer buffer = timelineCache.peek(followers[i]);
+            if (buffer != null) {
+                buffer.add(doc, weetTable);
             }
-            else if (comparison < 0) {
-                return getTrendingTopic(h.left, text);
+        }
+    }
+
+    /*
+     * Sort the first count positions of order, which hold indices into weets, by the dates of the weets, using merge
+     * sort; it is stable, so indices of weets with equal dates stay in the same order
+     */
+    private void sortIndices(Weet[] weets, int[] order, int count) {
+        int[] buffer = new int[count];
+
+        for (int width = 1; width < count; width *= 2) {
+            for (int left = 0; left < count - width; left += 2 * width) {
+                int middle = left + width;
+                int right = middle + width < count ? middle + width : count;
+                int i = left, j = middle, k = left;
+
+                while (i < middle && j < right) {
+                    if (weets[order[j]].getDateWeeted().compareTo(weets[order[i]].getDateWeeted()) < 0) {
+                        buffer[k++] = order[j++];
+                    }
+                    else {
+                        buffer[k++] = order[i++];
+                    }
+                }
+                while (i < middle) {
+                    buffer[k++] = order[i++];
+                }
+                while (j < right) {
+                    buffer[k++] = order[j++];
+                }
+                System.arraycopy(buffer, left, order, left, right - left);
             }
-            return getTrendingTopic(h.right, text);
         }
+    }
 
-        // return a list of all trending topics
-        public TrendingTopic[] getTrendingArray() {
-            TrendingTopic[] trendingArray = new TrendingTopic[nodeCount];
-            int[] counter = {0}; // counter used as an array to be modified in subsequent method calls
+    /*
+     * Find the trending topics in a message and count one use of each, at the given time. A topic is a '#' followed by
+     * either a run of word characters (letters, digits and underscores) or a run of any other characters, which is what
+     * the regex "#(\w+|\W+)" used to match; scanning the message once by hand avoids compiling the regex and
+     * creating a Matcher and a substring for every topic of every weet.
+     */
+    private void addTrendingTopics(String message, long time) {
+        int length = message.length();
+        int i = 0;
 
-            getTrendingArray(root, trendingArray, counter);
-            if (counter[0] == 0) {
-                return null;
+        while (i < length - 1) {
+            if (message.charAt(i) != '#') {
+                i++;
+                continue;
             }
-            return trendingArray;
-        }
 
-        private void getTrendingArray(Node x, TrendingTopic[] trendingArray, int[] counter) {
-            // if the node is null, go back
-            if (x == null) {
-                return;
+            // the topic continues for as long as its characters are of the same kind as the first one
+            int start = i + 1;
+            boolean word = isWordCharacter(message.charAt(start));
+            int end = start + 1;
+            while (end < length && isWordCharacter(message.charAt(end)) == word) {
+                end++;
             }
 
-            getTrendingArray(x.right, trendingArray, counter); // go to the right subtree
-            trendingArray[counter[0]++] = x.trending; // add the current node's trending topic
-            getTrendingArray(x.left, trendingArray, counter); // go to the left subtree
+            // the topic is new if interning it created a topic
+            int previousTopicCount = topicCount;
+            int topic = topicDictionary.intern(message, start, end);
+            if (topicCount > previousTopicCount) {
+                trendingRanking.add(topics[topic]);
+            }
+            else {
+                trendingRanking.increment(topics[topic]);
+            }
+            trendingWindows.add(topic, time);
+            decayedTrending.add(topic, time);
+            i = end;
         }
     }
 
-    // this class helps store Weet objects as elements of a Singly Linked List
-    class ListElement {
-        private Weet weet; // weet value of the list element
-        private ListElement next; // link to the next element in the list
+    // check if a character is a word character, as matched by \w in a regex
+    private boolean isWordCharacter(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '_';
+    }
 
-        // simple constructor that assigns a value to the list element
-        public ListElement(Weet weet) {
-            this.weet = weet;
-        }
+    // create a trending topic with the next free ID and store it in topics
+    private TrendingTopic newTopic(String name) {
+        if (topicCount == topics.length) {
+            TrendingTopic[] newTopics = new TrendingTopic[topicCount * 2];
 
-        // get the list element's weet
-        public Weet getWeet() {
-            return weet;
+            System.arraycopy(topics, 0, newTopics, 0, topicCount);
+            topics = newTopics;
         }
+        topics[topicCount] = new TrendingTopic(name, topicCount);
+        return topics[topicCount++];
+    }
 
-        // get the next list element
-        public ListElement getNext() {
-            return next;
+    // get the weet with the given ID from weetIds and weetTable, or null if it doesn't exist
+    public Weet getWeet(int wid) {
+        indexReadLock.lock();
+        try {
+            int doc = weetIds.get(wid);
+
+            if (doc < 0) {
+                return null;
+            }
+            return weetTable.getWeet(doc);
         }
+        finally {
+            indexReadLock.unlock();
+        }
+    }
 
-        // set the next list element
-        public void setNext(ListElement next) {
-            this.next = next;
+    // get all weets, sorted by date, starting with the most recent, from weetDateTree
+    public Weet[] getWeets() {
+        treeReadLock.lock();
+        try {
+            return weetDateTree.getWeetList();
+        }
+        finally {
+            treeReadLock.unlock();
         }
     }
 
     /*
-     * Singly Linked List of ListElement objects in which elements are added at the front; mainly
-     * used when returning arrays, in order to allocate exactly as much memory as needed.
+     * get at most limit weets, sorted by date, starting with the most recent and skipping the first offset weets; the
+     * subtree sizes kept in weetDateTree allow a page deep into the history to be found without copying the weets before it
      */
-    class LinkedList {
-        private ListElement head; // head of the list
-        private int size; // size of the list
+    public Weet[] getWeets(int offset, int limit) {
+        treeReadLock.lock();
+        try {
+            Weet[] nullCase = {}; // value to return in case there are no weets, since Witter crashes if null is returned
 
-        // empty list constructor
-        public LinkedList() {
-            head = null;
-            size = 0;
+            if (offset < 0 || limit <= 0) {
+                return nullCase;
+            }
+            return weetDateTree.getWeetList(offset, limit);
         }
+        finally {
+            treeReadLock.unlock();
+        }
+    }
 
-        // add element to the front
-        public void add(Weet weet) {
-            ListElement newElement = new ListElement(weet);
+    // get all weets by the user with the given ID, sorted by date, starting with the most recent, from userTimelines
+    public Weet[] getWeetsByUser(User usr) {
+        return getWeetsByUser(usr, 0, Integer.MAX_VALUE);
+    }
 
-            newElement.setNext(head);
-            head = newElement;
-            size++;
+    /*
+     * get at most limit weets by the user with the given ID, sorted by date, starting with the most recent and skipping
+     * the first offset weets; this allows the latest page of a profile to be shown without copying the user's history
+     */
+    public Weet[] getWeetsByUser(User usr, int offset, int limit) {
+        indexReadLock.lock();
+        try {
+            DocList timeline = userTimelines.get(usr.getId());
+            Weet[] nullCase = {}; // value to return in case there are no weets, since Witter crashes if null is returned
+
+            if (timeline == null || offset < 0 || limit <= 0) {
+                return nullCase;
+            }
+            return timeline.getWeets(offset, limit, weetTable);
+        }
+        finally {
+            indexReadLock.unlock();
         }
+    }
 
-        // get the size of the list
-        public int size() {
-            return size;
+    /*
+     * get all weets containing the query string, sorted by date, starting with the most recent; queries of at least
+     * three characters are answered by trigramIndex, while shorter ones fall back to a full scan of weetDateTree
+     */
+    public Weet[] getWeetsContaining(String query) {
+        // prevent crash if query string is null
+        if (query == null) {
+            return null;
+        }
+        if (query.length() < 3) {
+            treeReadLock.lock();
+            try {
+                return weetDateTree.getWeetListByQueryString(query);
+            }
+            finally {
+                treeReadLock.unlock();
+            }
         }
 
-        // get the head of the list - useful when traversing the list
-        public ListElement getHead() {
-            return head;
+        indexReadLock.lock();
+        try {
+            int[] matches = trigramIndex.search(query, weetTable);
+            if (matches == null) {
+                return null;
+            }
+
+            Weet[] result = new Weet[matches.length];
+            for (int i = 0; i < matches.length; i++) {
+                result[i] = weetTable.getWeet(matches[i]);
+            }
+            return result;
+        }
+        finally {
+            indexReadLock.unlock();
         }
     }
 
-    // class that helps store (String, int) pairs representing trending topics and their frequencies
-    class TrendingTopic {
-        String name; // name of the topic, without the '#' character
-        int timesUsed; // number of times the topic has been used so far
+    // set the follower store whose follows are used to build home timelines in getTimeline()
+    public void setFollowerStore(FollowerStore followerStore) {
+        indexWriteLock.lock();
+        try {
+            this.followerStore = followerStore;
 
-        // simple constructor that initialises the name of the topic and the number of times it was used (once)
-        public TrendingTopic(String name) {
-            this.name = name;
-            timesUsed = 1;
+            // the cached timelines were built from the follows of the previous store
+            if (timelineCache != null) {
+                timelineCache.clear();
+            }
         }
-
-        // get the topic's name
-        public String getName() {
-            return name;
+        finally {
+            indexWriteLock.unlock();
         }
+    }
 
-        // get the number of times the topic has been used so far
-        public int getTimesUsed() {
-            return timesUsed;
-        }
+    // keep home timelines filled by fan-out on write, with the default sizes; see enableTimelineCache() below
+    public void enableTimelineCache() {
+        enableTimelineCache(DEFAULT_TIMELINE_BUFFER_SIZE, DEFAULT_FAN_OUT_THRESHOLD, DEFAULT_TIMELINE_CACHE_BUDGET);
+    }
 
-        // increase the number of times the topic has been used so far
-        public void increaseTimesUsed() {
-            timesUsed++;
+    /*
+     * Keep the latest bufferSize weets of the home timelines of the users who read them most recently, filled by fan-out
+     * on write: every new weet is pushed to the buffers of the author's followers, unless the author has more than
+     * followerThreshold followers, whose weets are merged when timelines are read instead. The buffers hold at most
+     * budget weets in total, and the least recently read ones are evicted to make room for new ones. getTimeline()
+     * then gives the same weets as without the cache, but only has to merge the weets of very popular users.
+     */
+    public void enableTimelineCache(int bufferSize, int followerThreshold, int budget) {
+        indexWriteLock.lock();
+        try {
+            // prevent crash if the buffers can't hold any weets
+            if (bufferSize <= 0) {
+                return;
+            }
+            timelineCache = new TimelineCache(bufferSize, followerThreshold, budget);
+        }
+        finally {
+            indexWriteLock.unlock();
         }
     }
 
-    private WeetRedBlackBST weetIdTree; // store weets in a binary search tree ordered by ID
-    private DateRedBlackBST weetDateTree; // store weets in a binary search tree ordered by date
-    private TrendingRedBlackBST trendingTree; // store trending topics in a binary search tree ordered lexicographically
+    // get the latest limit weets of the home timeline of the user with ID uid; see getTimeline() below
+    public Weet[] getTimeline(int uid, int limit) {
+        return getTimeline(uid, new Date(Long.MAX_VALUE), limit);
+    }
 
-    // initialise the three data structures
-    public WeetStore() {
-        weetIdTree = new WeetRedBlackBST();
-        weetDateTree = new DateRedBlackBST();
-        trendingTree = new TrendingRedBlackBST();
+    /*
+     * get at most limit weets posted before or on the given date by the users that the user with ID uid follows, sorted
+     * by date, starting with the most recent. The user timelines of the users followed are merged lazily by a
+     * TimelineMerge, which stops as soon as limit weets are found, so a page costs O(f*logw + limit*logf) for f users
+     * followed with up to w weets each, however many weets they have posted.
+     */
+    public Weet[] getTimeline(int uid, Date before, int limit) {
+        indexReadLock.lock();
+        try {
+            Weet[] nullCase = {}; // value to return in case there are no weets, since Witter crashes if null is returned
+
+            // prevent crash if the date is null
+            if (before == null) {
+                return null;
+            }
+            if (followerStore == null || limit <= 0) {
+                return nullCase;
+            }
+            if (timelineCache != null) {
+                Weet[] cached = getCachedTimeline(uid, before.getTime(), limit);
+                if (cached != null) {
+                    return cached;
+                }
+            }
+            int[] follows = followerStore.getFollows(uid);
+            if (follows == null) {
+                return nullCase;
+            }
+
+            // start every user timeline at its last weet posted before or on the given date
+            TimelineMerge merge = new TimelineMerge(follows.length, weetTable);
+            long available = 0;
+            for (int i = 0; i < follows.length; i++) {
+                DocList timeline = userTimelines.get(follows[i]);
+                if (timeline != null) {
+                    int count = timeline.countUpTo(before.getTime(), weetTable);
+                    merge.add(timeline, count - 1);
+                    available += count;
+                }
+            }
+            merge.heapify();
+
+            Weet[] result = new Weet[(int) Math.min(limit, available)];
+            for (int i = 0; i < result.length; i++) {
+                result[i] = weetTable.getWeet(merge.poll());
+            }
+            return result;
+        }
+        finally {
+            indexReadLock.unlock();
+        }
     }
 
-    // add a weet to weetIdTree and weetDateTree
-    public boolean addWeet(Weet weet) {
-        // use weetSIdTree to check if a weet with the same ID already exists
-        if (weetIdTree.getWeetById(weet.getId()) == null) {
-            weetIdTree.add(weet);
-            weetDateTree.add(weet);
+    /*
+     * get a page of the home timeline of a user from their timeline buffer, filling it first if they have none or if
+     * they followed or stopped following someone since, and merging in the weets of the users followed whose weets
+     * aren't pushed; returns null if the buffer doesn't go back far enough for the page, which must then be merged
+     * from the user timelines of all the users followed
+     */
+    private Weet[] getCachedTimeline(int uid, long time, int limit) {
+        // readers share the index lock, but reading a timeline changes its buffer and the LRU list
+        synchronized (timelineCache) {
+            int version = followerStore.getFollowsVersion(uid);
+            TimelineBuffer buffer = timelineCache.get(uid);
+            if (buffer == null || buffer.getVersion() != version) {
+                buffer = fillTimelineBuffer(uid, version);
+            }
 
-            // use a regex to match trending topic patterns
-            Pattern trendingPattern = Pattern.compile("#(\\w+|\\W+)");
-            Matcher match = trendingPattern.matcher(weet.getMessage());
+            int[] pulledFollows = buffer.getPulledFollows(timelineCache.getPulledCount());
+            if (pulledFollows == null) {
+                pulledFollows = findPulledFollows(uid);
+                buffer.setPulledFollows(pulledFollows, timelineCache.getPulledCount());
+            }
+            int position = buffer.countUpTo(time, weetTable) - 1;
+            long available = position + 1;
+            TimelineMerge merge = new TimelineMerge(pulledFollows.length, weetTable);
+            for (int i = 0; i < pulledFollows.length; i++) {
+                DocList timeline = userTimelines.get(pulledFollows[i]);
+                if (timeline != null) {
+                    int count = timeline.countUpTo(time, weetTable);
+                    merge.add(timeline, count - 1);
+                    available += count;
+                }
+            }
+            merge.heapify();
+
+            Weet[] page = new Weet[(int) Math.min(limit, available)];
+            int count = 0;
+            while (count < limit) {
+                // weets pushed before their author's weets were merged instead are taken from the merge
+                while (position >= 0 && timelineCache.isPulled(weetTable.getWeet(buffer.get(position)).getUserId())) {
+                    position--;
+                }
+                if (position < 0 && !buffer.isComplete()) {
+                    return null;
+                }
 
-            // take all matches and add them to trendingTree, or increment the number of occurences
-            while (match.find()) {
-                String trendingTopic = match.group(1);
-                TrendingTopic result = trendingTree.getTrendingTopic(trendingTopic);
-                if (result == null) {
-                    trendingTree.add(new TrendingTopic(trendingTopic));
+                int doc;
+                if (position >= 0 && (merge.isEmpty() || weetTable.before(buffer.get(position), merge.peek()))) {
+                    doc = buffer.get(position--);
+                }
+                else if (!merge.isEmpty()) {
+                    doc = merge.poll();
                 }
                 else {
-                    result.increaseTimesUsed();
+                    break;
                 }
-            }
-            return true;
-        }
 
-        return false;
-    }
+                page[count++] = weetTable.getWeet(doc);
+            }
 
-    // get the weet with the given ID from weetIdTree, or null if it doesn't exist
-    public Weet getWeet(int wid) {
-        return weetIdTree.getWeetById(wid);
+            if (count < page.length) {
+                Weet[] result = new Weet[count];
+                System.arraycopy(page, 0, result, 0, count);
+                return result;
+            }
+            return page;
+        }
     }
 
-    // get all weets, sorted by date, starting with the most recent, from weetDateTree
-    public Weet[] getWeets() {
-        return weetDateTree.getWeetList();
-    }
+    // create the timeline buffer of a user and fill it with the latest weets of the users they follow that are pushed
+    private TimelineBuffer fillTimelineBuffer(int uid, int version) {
+        TimelineBuffer buffer = timelineCache.create(uid, version);
+        int[] follows = followerStore.getFollows(uid);
+        if (follows == null) {
+            return buffer;
+        }
 
-    // get all weets by the user with the given ID, sorted by date, starting with the most recent, from weetDateTree
-    public Weet[] getWeetsByUser(User usr) {
-        Weet[] result = weetDateTree.getWeetListByUserId(usr.getId());
-        Weet[] nullCase = {}; // value to return in case result is null, since Witter crashes if null is returned
+        TimelineMerge merge = new TimelineMerge(follows.length, weetTable);
+        for (int i = 0; i < follows.length; i++) {
+            DocList timeline = userTimelines.get(follows[i]);
+            if (timeline != null && !timelineCache.isPulled(follows[i])) {
+                merge.add(timeline, timeline.size() - 1);
+            }
+        }
+        merge.heapify();
 
-        if (result == null) {
-            return nullCase;
+        // the weets come out newest first, but are added oldest first, so that each of them goes at the end
+        int[] latest = new int[timelineCache.getBufferSize()];
+        int count = 0;
+        while (count < latest.length && !merge.isEmpty()) {
+            latest[count++] = merge.poll();
         }
-        return result;
+        for (int i = count - 1; i >= 0; i--) {
+            buffer.add(latest[i], weetTable);
+        }
+        if (!merge.isEmpty()) {
+            buffer.markIncomplete();
+        }
+        return buffer;
     }
 
-    // get all weets containing the query string, sorted by date, starting with the most recent, from weetDateTree
-    public Weet[] getWeetsContaining(String query) {
-        // prevent crash if query string is null
-        if (query == null) {
-            return null;
+    // find the users followed by a user whose weets are merged when timelines are read, rather than pushed
+    private int[] findPulledFollows(int uid) {
+        int[] follows = followerStore.getFollows(uid);
+        int count = 0;
+
+        if (follows == null) {
+            return new int[0];
+        }
+        for (int i = 0; i < follows.length; i++) {
+            if (timelineCache.isPulled(follows[i])) {
+                follows[count++] = follows[i];
+            }
         }
-        return weetDateTree.getWeetListByQueryString(query);
+        int[] pulled = new int[count];
+        System.arraycopy(follows, 0, pulled, 0, count);
+        return pulled;
     }
 
-    // get all weets on the given date from weetDateTree
+    // get all weets posted on the same calendar day as the given date, in the default time zone, from weetsByDay
     public Weet[] getWeetsOn(Date dateOn) {
         // prevent crash if date is null
         if (dateOn == null) {
             return null;
         }
-        return weetDateTree.getWeetListOnDate(dateOn);
+        ZoneId zone = ZoneId.systemDefault();
+        return getWeetsOnDay(dateOn.toInstant().atZone(zone).toLocalDate(), zone);
+    }
+
+    /*
+     * get all weets posted on the given calendar day in the given time zone, sorted by date, starting with the most
+     * recent; weetsByDay is keyed by UTC day, so the local day is covered by at most three of its buckets (days can be
+     * longer than 24 hours when the clocks change), whose weets outside the day are skipped with binary searches
+     */
+    public Weet[] getWeetsOnDay(LocalDate day, ZoneId zone) {
+        indexReadLock.lock();
+        try {
+            // prevent crash if the day or the time zone is null
+            if (day == null || zone == null) {
+                return null;
+            }
+
+            long start = day.atStartOfDay(zone).toInstant().toEpochMilli();
+            long end = day.plusDays(1).atStartOfDay(zone).toInstant().toEpochMilli(); // exclusive
+            int firstDay = (int) Math.floorDiv(start, DAY);
+            int lastDay = (int) Math.floorDiv(end - 1, DAY);
+            int count = 0;
+
+            for (int d = firstDay; d <= lastDay; d++) {
+                DocList dayList = weetsByDay.get(d);
+                if (dayList != null) {
+                    count += dayList.countBefore(end, weetTable) - dayList.countBefore(start, weetTable);
+                }
+            }
+            if (count == 0) {
+                return null;
+            }
+
+            // go through the buckets from the latest one, and through each bucket from its latest weet
+            Weet[] result = new Weet[count];
+            int counter = 0;
+            for (int d = lastDay; d >= firstDay; d--) {
+                DocList dayList = weetsByDay.get(d);
+                if (dayList == null) {
+                    continue;
+                }
+                int low = dayList.countBefore(start, weetTable);
+                for (int i = dayList.countBefore(end, weetTable) - 1; i >= low; i--) {
+                    result[counter++] = weetTable.getWeet(dayList.get(i));
+                }
+            }
+            return result;
+        }
+        finally {
+            indexReadLock.unlock();
+        }
     }
 
     // get all weets before or on a given date, sorted by date, starting with the most recent, from weetDateTree
     public Weet[] getWeetsBefore(Date dateBefore) {
-        // prevent crash if date is null
-        if (dateBefore == null) {
-            return null;
+        treeReadLock.lock();
+        try {
+            // prevent crash if date is null
+            if (dateBefore == null) {
+                return null;
+            }
+            return weetDateTree.getWeetListBetweenDates(null, dateBefore);
+        }
+        finally {
+            treeReadLock.unlock();
         }
-        return weetDateTree.getWeetListBeforeDate(dateBefore);
     }
 
-    // get the top ten trending topics, sorted by number of occurences, from trendingTree
-    public String[] getTrending() {
-        TrendingTopic[] trendingArray = trendingTree.getTrendingArray();
-        String[] topTrending = new String[10];
-        int minimumLength = 10;
-
-        if (trendingArray == null) {
-            minimumLength = 0;
+    // get all weets posted from one date to another (both inclusive), sorted by date, starting with the most recent
+    public Weet[] getWeetsBetween(Date from, Date to) {
+        treeReadLock.lock();
+        try {
+            // prevent crash if a date is null
+            if (from == null || to == null) {
+                return null;
+            }
+            return weetDateTree.getWeetListBetweenDates(from, to);
         }
-        else {
-            if (trendingArray.length < 10) {
-                minimumLength = trendingArray.length;
+        finally {
+            treeReadLock.unlock();
+        }
+    }
+
+    // count the weets posted before or on a given date, without creating the list of weets
+    public int countWeetsBefore(Date dateBefore) {
+        treeReadLock.lock();
+        try {
+            // prevent crash if date is null
+            if (dateBefore == null) {
+                return 0;
             }
-            quickSort(trendingArray, 0, trendingArray.length - 1);
+            return weetDateTree.countBetweenDates(null, dateBefore);
+        }
+        finally {
+            treeReadLock.unlock();
         }
+    }
 
-        for (int i = 0 ; i < minimumLength; i++) {
-            topTrending[i] = "#" + trendingArray[i].getName();
+    // count the weets posted from one date to another (both inclusive), without creating the list of weets
+    public int countWeetsBetween(Date from, Date to) {
+        treeReadLock.lock();
+        try {
+            // prevent crash if a date is null
+            if (from == null || to == null) {
+                return 0;
+            }
+            return weetDateTree.countBetweenDates(from, to);
         }
-        for (int i = minimumLength; i < 10; i++) {
-            topTrending[i] = null;
+        finally {
+            treeReadLock.unlock();
         }
+    }
 
-        return topTrending;
+    // get the top ten trending topics, sorted by number of occurences, from trendingRanking
+    public String[] getTrending() {
+        return getTrending(10);
     }
 
-    // quicksort algorithm; taken and adapted from http://www.algolist.net/Algorithms/Sorting/Quicksort
-    private void quickSort(TrendingTopic[] list, int left, int right) {
-        int index = partition(list, left, right);
+    // get the top k trending topics, sorted by number of occurences, from trendingRanking
+    public String[] getTrending(int k) {
+        String[] nullCase = {}; // value to return in case no topics are asked for
 
-        if (left < index - 1) {
-            quickSort(list, left, index - 1);
+        if (k <= 0) {
+            return nullCase;
+        }
+
+        indexReadLock.lock();
+        try {
+            return trendingRanking.getTop(k);
         }
-        if (index < right) {
-            quickSort(list, index, right);
+        finally {
+            indexReadLock.unlock();
         }
     }
 
-    private int partition(TrendingTopic[] list, int left, int right) {
-        int i = left, j = right;
-        TrendingTopic temp;
-        TrendingTopic pivot = list[(left + right) / 2];
+    // get the top ten topics trending from windowStart (inclusive) to windowEnd (exclusive)
+    public String[] getTrending(Date windowStart, Date windowEnd) {
+        return getTrending(windowStart, windowEnd, 10);
+    }
+
+    /*
+     * get the top k topics trending from windowStart (inclusive) to windowEnd (exclusive), sorted by number of occurences
+     * within the window, from trendingWindows; the window is widened to whole hours (or whole days, more than a week
+     * before the most recent weet), and is padded with null like getTrending()
+     */
+    public String[] getTrending(Date windowStart, Date windowEnd, int k) {
+        String[] nullCase = {}; // value to return in case no topics are asked for
 
-        while (i <= j) {
-            while (list[i].getTimesUsed() > pivot.getTimesUsed()) {
-                i++;
+        indexReadLock.lock();
+        try {
+            // prevent crash if a date is null
+            if (windowStart == null || windowEnd == null) {
+                return null;
+            }
+            if (k <= 0) {
+                return nullCase;
             }
-            while (list[j].getTimesUsed() < pivot.getTimesUsed()) {
-                j--;
+
+            String[] topTrending = new String[k];
+            if (windowStart.before(windowEnd)) {
+                int[] top = trendingWindows.count(windowStart.getTime(), windowEnd.getTime()).getTop(k);
+                for (int i = 0; i < top.length; i++) {
+                    topTrending[i] = "#" + topics[top[i]].getName();
+                }
             }
-            if (i <= j) {
-                temp = list[i];
-                list[i++] = list[j];
-                list[j--] = temp;
+            return topTrending;
+        }
+        finally {
+            indexReadLock.unlock();
+        }
+    }
+
+    // get the top ten trending topics, sorted by exponentially decayed number of occurences, from decayedTrending
+    public String[] getTrendingDecayed() {
+        return getTrendingDecayed(10);
+    }
+
+    // get the top k trending topics, sorted by exponentially decayed number of occurences, from decayedTrending
+    public String[] getTrendingDecayed(int k) {
+        String[] nullCase = {}; // value to return in case no topics are asked for
+
+        if (k <= 0) {
+            return nullCase;
+        }
+
+        indexReadLock.lock();
+        try {
+            String[] topTrending = new String[k];
+            int[] top = decayedTrending.getTop(k);
+
+            for (int i = 0; i < top.length; i++) {
+                topTrending[i] = "#" + topics[top[i]].getName();
             }
+            return topTrending;
+        }
+        finally {
+            indexReadLock.unlock();
         }
-        return i;
     }
 }
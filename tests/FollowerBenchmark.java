@@ -0,0 +1,95 @@
+import java.util.Date;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import uk.ac.warwick.java.cs126.services.FollowerStore;
+
+/*
+ * Measures how long FollowerStore takes to load a synthetic follower graph through addFollowers, and to compute the
+ * influence of every user with computeInfluence, both on a single thread and on all cores. Compile and run it like
+ * TestRunner:
+ *
+ *     java -cp witter-models.jar:. FollowerBenchmark [number of users] [number of follows]
+ */
+public class FollowerBenchmark
+{
+    public static void main(String[] args) throws Exception
+    {
+        int userCount = 300000;
+        int followCount = 3000000;
+        if (args.length > 0) {
+            userCount = Integer.parseInt(args[0]);
+        }
+        if (args.length > 1) {
+            followCount = Integer.parseInt(args[1]);
+        }
+
+        int[] uid1s = new int[followCount];
+        int[] uid2s = new int[followCount];
+        Date[] followDates = new Date[followCount];
+        createFollows(userCount, uid1s, uid2s, followDates);
+
+        System.out.println("[Benchmarking addFollowers with " + userCount + " users and " + followCount + " follows]");
+        FollowerStore followerStore = null;
+        for (int run = 1; run <= 3; run++) {
+            followerStore = new FollowerStore();
+            long start = System.nanoTime();
+            int added = followerStore.addFollowers(uid1s, uid2s, followDates);
+            long time = System.nanoTime() - start;
+            System.out.println("--> run " + run + " : \t" + (time / 1000000) + " ms, " + added + " follows added");
+        }
+
+        // The first run of each only warms up the JIT compiler, and is not reported
+        ForkJoinPool singleThread = new ForkJoinPool(1);
+        ForkJoinPool allCores = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+        influence(followerStore, singleThread);
+        influence(followerStore, allCores);
+
+        System.out.println("[Benchmarking computeInfluence, " + allCores.getParallelism() + " cores available]");
+        for (int run = 1; run <= 3; run++) {
+            long serial = influence(followerStore, singleThread);
+            long parallel = influence(followerStore, allCores);
+            System.out.println("--> run " + run + " : \t1 thread " + (serial / 1000000) + " ms, "
+                + allCores.getParallelism() + " threads " + (parallel / 1000000) + " ms");
+        }
+        singleThread.shutdown();
+        allCores.shutdown();
+
+        int[] topUsers = followerStore.getTopUsersByInfluence(5);
+        System.out.print("--> most influential users : \t");
+        for (int i = 0; i < topUsers.length; i++) {
+            System.out.print(topUsers[i] + " ");
+        }
+        System.out.println();
+    }
+
+    /*
+     * Computes the influence of every user, running the fork-join tasks in the given pool
+     * @return Returns the time taken, in nanoseconds
+     */
+    private static long influence(FollowerStore followerStore, ForkJoinPool pool) throws Exception
+    {
+        long start = System.nanoTime();
+
+        pool.submit(() -> followerStore.computeInfluence(20)).get();
+        return System.nanoTime() - start;
+    }
+
+    /*
+     * Creates follows one second apart between random users; popular users are much more likely to be followed than
+     * the rest, as they would be on the real site
+     */
+    private static void createFollows(int userCount, int[] uid1s, int[] uid2s, Date[] followDates)
+    {
+        Random random = new Random(126);
+        long time = 1350000000000L;
+
+        for (int i = 0; i < uid1s.length; i++) {
+            // cubing a uniform number favours small user IDs
+            double skew = random.nextDouble();
+            uid1s[i] = random.nextInt(userCount);
+            uid2s[i] = (int) (skew * skew * skew * userCount);
+            followDates[i] = new Date(time + i * 1000L);
+        }
+    }
+}
@@ -0,0 +1,651 @@
+import java.util.Date;
+import java.text.DateFormat;
+import java.text.SimpleDateFormat;
+import java.text.ParseException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import uk.ac.warwick.java.cs126.services.FollowerStore;
+
+class FollowerTests {
+
+
+    /*
+     * Tests that followers are found for many users, including IDs that share hash buckets, and that users without
+     * any relationships don't crash the store
+     * @return Returns true is the test passed, false is it failed
+     */
+    protected boolean testIsAFollower()
+    {
+        // Create new Follower Store where user i * 997 follows user i + 1, for enough users for the index to grow
+        FollowerStore followerStore = new FollowerStore();
+        for (int i = 0; i < 2000; i++)
+        {
+            if (!followerStore.addFollower(i * 997, i + 1, createDate("01/11/2012 10:00")))
+            {
+                return false;
+            }
+        }
+
+        // A relationship can only be added once
+        if (followerStore.addFollower(997, 2, createDate("02/11/2012 10:00")))
+        {
+            return false;
+        }
+        for (int i = 0; i < 2000; i++)
+        {
+            if (!followerStore.isAFollower(i * 997, i + 1) || followerStore.isAFollower(i + 1, i * 997))
+            {
+                return false;
+            }
+        }
+
+        // User 1 is followed by user 0 only, and user -1 has never been seen
+        return followerStore.getNumFollowers(1) == 1 && followerStore.getNumFollowers(-1) == 0
+            && !followerStore.isAFollower(0, -1) && followerStore.getFollowers(-1) == null;
+    }
+
+    /*
+     * Tests that followers of a user with many followers are found, and that they can't follow the user twice
+     * @return Returns true is the test passed, false is it failed
+     */
+    protected boolean testManyFollowers()
+    {
+        // Create new Follower Store where users 1 to 100 follow user 0, and user 0 follows the even ones back
+        FollowerStore followerStore = new FollowerStore();
+        for (int i = 1; i <= 100; i++)
+        {
+            followerStore.addFollower(i, 0, createDate("01/11/2012 10:00"));
+            if (i % 2 == 0)
+            {
+                followerStore.addFollower(0, i, createDate("02/11/2012 10:00"));
+            }
+        }
+
+        for (int i = 1; i <= 100; i++)
+        {
+            if (followerStore.addFollower(i, 0, createDate("03/11/2012 10:00")) || !followerStore.isAFollower(i, 0))
+            {
+                return false;
+            }
+            if (followerStore.isAFollower(0, i) != (i % 2 == 0))
+            {
+                return false;
+            }
+        }
+        return followerStore.getNumFollowers(0) == 100 && !followerStore.isAFollower(101, 0)
+            && !followerStore.isAFollower(0, 0);
+    }
+
+    /*
+     * Tests that adding relationships in bulk gives the same store as adding them one by one
+     * @return Returns true is the test passed, false is it failed
+     */
+    protected boolean testAddFollowers()
+    {
+        // Create two new Follower Stores that already contain a relationship
+        FollowerStore oneByOne = new FollowerStore();
+        FollowerStore bulk = new FollowerStore();
+        oneByOne.addFollower(1, 2, createDate("01/11/2012 10:00"));
+        bulk.addFollower(1, 2, createDate("01/11/2012 10:00"));
+
+        // The batch repeats a relationship and contains the existing one
+        int[] uid1s = { 3, 1, 3, 1, 2 };
+        int[] uid2s = { 2, 3, 2, 2, 3 };
+        Date[] followDates = {
+            createDate("02/11/2012 10:00"),
+            createDate("03/11/2012 10:00"),
+            createDate("04/11/2012 10:00"),
+            createDate("05/11/2012 10:00"),
+            createDate("06/11/2012 10:00")
+        };
+
+        int added = 0;
+        for (int i = 0; i < uid1s.length; i++)
+        {
+            if (oneByOne.addFollower(uid1s[i], uid2s[i], followDates[i]))
+            {
+                added++;
+            }
+        }
+
+        if (bulk.addFollowers(uid1s, uid2s, followDates) != added || added != 3)
+        {
+            return false;
+        }
+        for (int uid = 1; uid <= 3; uid++)
+        {
+            if (!java.util.Arrays.equals(oneByOne.getFollowers(uid), bulk.getFollowers(uid))
+                || !java.util.Arrays.equals(oneByOne.getFollows(uid), bulk.getFollows(uid)))
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /*
+     * Tests that the mutual followers of a user with many followers and a user with a few are found, starting with the
+     * most recent relationship of the two, including relationships that haven't been merged into the graph yet
+     * @return Returns true is the test passed, false is it failed
+     */
+    protected boolean testGetMutualFollowers()
+    {
+        // Create new Follower Store where users 1 to 3000 follow user 0, one minute apart
+        FollowerStore followerStore = new FollowerStore();
+        Date start = createDate("01/11/2012 10:00");
+        for (int i = 1; i <= 3000; i++)
+        {
+            followerStore.addFollower(i, 0, new Date(start.getTime() + i * 60000L));
+        }
+
+        // Users 3, 6, ..., 30 follow user -1 earlier, except user 3, who follows user -1 after everyone else
+        for (int i = 6; i <= 30; i += 3)
+        {
+            followerStore.addFollower(i, -1, createDate("01/10/2012 10:00"));
+        }
+        followerStore.addFollower(3, -1, createDate("01/12/2012 10:00"));
+        followerStore.addFollower(-2, -1, createDate("01/12/2012 10:00"));
+
+        int[] expected = { 3, 30, 27, 24, 21, 18, 15, 12, 9, 6 };
+        if (!java.util.Arrays.equals(followerStore.getMutualFollowers(0, -1), expected)
+            || !java.util.Arrays.equals(followerStore.getMutualFollowers(-1, 0), expected))
+        {
+            return false;
+        }
+
+        // Users 6 and 9 follow both user 0 and user -1
+        int[] expectedFollows = { 0, -1 };
+        return java.util.Arrays.equals(followerStore.getMutualFollows(6, 9), expectedFollows)
+            && followerStore.getMutualFollowers(0, -3) == null && followerStore.getMutualFollowers(-2, 0) == null;
+    }
+
+    /*
+     * Tests that followers are returned starting with the most recent one, even if they weren't added in date order,
+     * and that pages of them match the full list
+     * @return Returns true is the test passed, false is it failed
+     */
+    protected boolean testGetFollowersPage()
+    {
+        // Create new Follower Store where users 1 to 1500 follow user 0, user i (i * 37 % 1500) minutes after the start
+        FollowerStore followerStore = new FollowerStore();
+        Date start = createDate("01/11/2012 10:00");
+        for (int i = 1; i <= 1500; i++)
+        {
+            followerStore.addFollower(i, 0, new Date(start.getTime() + (i * 37 % 1500) * 60000L));
+        }
+
+        // The most recent follower followed 1499 minutes after the start, and the others one minute earlier each
+        int[] followers = followerStore.getFollowers(0);
+        for (int i = 0; i < followers.length; i++)
+        {
+            if ((followers[i] * 37 % 1500) != 1499 - i)
+            {
+                return false;
+            }
+        }
+
+        for (int offset = 0; offset < 1500; offset += 130)
+        {
+            int[] page = followerStore.getFollowers(0, offset, 100);
+            int[] expected = java.util.Arrays.copyOfRange(followers, offset, Math.min(offset + 100, 1500));
+            if (!java.util.Arrays.equals(page, expected))
+            {
+                return false;
+            }
+        }
+        return followerStore.getFollowers(0, 1500, 10).length == 0 && followerStore.getFollowers(-1, 0, 10) == null;
+    }
+
+    /*
+     * Tests that the top users are sorted by their number of followers, and that only the first ones can be asked for
+     * @return Returns true is the test passed, false is it failed
+     */
+    protected boolean testGetTopUsers()
+    {
+        // Create new Follower Store where user i is followed by users 100 to 100 + (i * 7 % 10), for users 0 to 9
+        FollowerStore followerStore = new FollowerStore();
+        for (int i = 0; i < 10; i++)
+        {
+            for (int j = 0; j <= i * 7 % 10; j++)
+            {
+                followerStore.addFollower(100 + j, i, createDate("01/11/2012 10:00"));
+            }
+        }
+
+        // User 7 has the most followers, then user 4, user 1, and so on, while users 100 to 109 have no followers
+        int[] expected = { 7, 4, 1, 8, 5, 2, 9, 6, 3, 0 };
+        if (!java.util.Arrays.equals(followerStore.getTopUsers(), expected))
+        {
+            return false;
+        }
+        if (!java.util.Arrays.equals(followerStore.getTopUsers(3), new int[] { 7, 4, 1 }))
+        {
+            return false;
+        }
+
+        // User 0 gains enough followers to be the first
+        for (int j = 1; j <= 10; j++)
+        {
+            followerStore.addFollower(100 + j, 0, createDate("02/11/2012 10:00"));
+        }
+        return java.util.Arrays.equals(followerStore.getTopUsers(2), new int[] { 0, 7 })
+            && new FollowerStore().getTopUsers() == null;
+    }
+
+    /*
+     * Tests that removed relationships disappear from every method, both for a user with few followers and for one
+     * with so many that most of them have been merged into the graphs, and that they can be added again
+     * @return Returns true is the test passed, false is it failed
+     */
+    protected boolean testRemoveFollower()
+    {
+        // Create new Follower Store where users 1 to 2000 follow user 0 and user 1 follows user 2, one minute apart
+        FollowerStore followerStore = new FollowerStore();
+        Date start = createDate("01/11/2012 10:00");
+        for (int i = 1; i <= 2000; i++)
+        {
+            followerStore.addFollower(i, 0, new Date(start.getTime() + i * 60000L));
+        }
+        followerStore.addFollower(1, 2, createDate("02/11/2012 10:00"));
+        followerStore.addFollower(3, 2, createDate("02/11/2012 10:00"));
+
+        // A relationship can only be removed once, and a relationship that doesn't exist can't be removed
+        if (!followerStore.removeFollower(1, 2) || followerStore.removeFollower(1, 2) || followerStore.removeFollower(2, 1))
+        {
+            return false;
+        }
+
+        // Remove every even follower of user 0
+        for (int i = 2; i <= 2000; i += 2)
+        {
+            if (!followerStore.removeFollower(i, 0))
+            {
+                return false;
+            }
+        }
+
+        int[] followers = followerStore.getFollowers(0);
+        if (followers.length != 1000 || followerStore.getNumFollowers(0) != 1000 || followerStore.isAFollower(2, 0))
+        {
+            return false;
+        }
+        for (int i = 0; i < 1000; i++)
+        {
+            if (followers[i] != 1999 - i * 2)
+            {
+                return false;
+            }
+        }
+        if (!java.util.Arrays.equals(followerStore.getFollowers(0, 10, 2), new int[] { 1979, 1977 }))
+        {
+            return false;
+        }
+        if (!java.util.Arrays.equals(followerStore.getMutualFollows(1, 3), new int[] { 0 }))
+        {
+            return false;
+        }
+
+        // User 2 can follow user 0 again, and user 2 has no followers left after user 3 stops following them
+        followerStore.removeFollower(3, 2);
+        return followerStore.addFollower(2, 0, createDate("03/11/2012 10:00")) && followerStore.getFollowers(0)[0] == 2
+            && followerStore.getFollowers(2) == null && java.util.Arrays.equals(followerStore.getTopUsers(), new int[] { 0 });
+    }
+
+    /*
+     * Tests that recommended users are those followed by the most users that the user follows, leaving out the user
+     * and those they already follow
+     * @return Returns true is the test passed, false is it failed
+     */
+    protected boolean testRecommend()
+    {
+        // Create new Follower Store where user 0 follows users 1 to 4, and user i follows users 0 to 4 and 10 to 10 + i
+        FollowerStore followerStore = new FollowerStore();
+        for (int i = 1; i <= 4; i++)
+        {
+            followerStore.addFollower(0, i, createDate("01/11/2012 10:00"));
+        }
+        for (int i = 1; i <= 4; i++)
+        {
+            followerStore.addFollower(i, 0, createDate("02/11/2012 10:00"));
+            for (int j = 1; j <= 4; j++)
+            {
+                if (j != i)
+                {
+                    followerStore.addFollower(i, j, createDate("02/11/2012 10:00"));
+                }
+            }
+            for (int j = 10; j <= 10 + i; j++)
+            {
+                followerStore.addFollower(i, j, createDate("02/11/2012 10:00"));
+            }
+        }
+
+        // Users 10 and 11 are followed by all four, then user 12 by three of them, user 13 by two and user 14 by one
+        if (!java.util.Arrays.equals(followerStore.recommend(0, 3), new int[] { 10, 11, 12 })
+            || !java.util.Arrays.equals(followerStore.recommend(0, 10), new int[] { 10, 11, 12, 13, 14 }))
+        {
+            return false;
+        }
+
+        // Once user 0 follows user 10, it isn't recommended anymore; user 14 follows nobody
+        followerStore.addFollower(0, 10, createDate("03/11/2012 10:00"));
+        return java.util.Arrays.equals(followerStore.recommend(0, 1), new int[] { 11 })
+            && followerStore.recommend(14, 5) == null && followerStore.recommend(0, 0).length == 0;
+    }
+
+    /*
+     * Tests that the shortest chain of follows between two users is found, in the direction of the follows, and only
+     * if it isn't longer than the given depth
+     * @return Returns true is the test passed, false is it failed
+     */
+    protected boolean testDistance()
+    {
+        // Create new Follower Store where user i follows user i + 1, for users 0 to 9, and users 1 to 10 follow user 100
+        FollowerStore followerStore = new FollowerStore();
+        for (int i = 0; i < 10; i++)
+        {
+            followerStore.addFollower(i, i + 1, createDate("01/11/2012 10:00"));
+            followerStore.addFollower(i + 1, 100, createDate("01/11/2012 10:00"));
+        }
+
+        // Follows only go one way, and the chain is longer than a depth of 5
+        if (followerStore.distance(0, 10, 10) != 10 || followerStore.distance(10, 0, 10) != -1
+            || followerStore.distance(0, 10, 5) != -1 || followerStore.distance(3, 3, 0) != 0
+            || followerStore.shortestPath(0, 10, 9) != null)
+        {
+            return false;
+        }
+
+        // User 2 follows user 7, which makes the chain from user 0 to user 10 five follows shorter
+        followerStore.addFollower(2, 7, createDate("02/11/2012 10:00"));
+        int[] expected = { 0, 1, 2, 7, 8, 9, 10 };
+        return followerStore.distance(0, 10, 6) == 6 && java.util.Arrays.equals(followerStore.shortestPath(0, 10, 10), expected)
+            && java.util.Arrays.equals(followerStore.shortestPath(0, 100, 10), new int[] { 0, 1, 100 })
+            && followerStore.distance(0, -1, 10) == -1
+            && followerStore.distance(-1, -1, 10) == -1 && followerStore.shortestPath(-1, -1, 10) == null;
+    }
+
+    /*
+     * Tests that a user followed by a few influential users is more influential than a user followed by many users
+     * that nobody follows, even though the latter has more followers
+     * @return Returns true is the test passed, false is it failed
+     */
+    protected boolean testComputeInfluence()
+    {
+        // Create new Follower Store where users 10 to 19 follow user 2, and are each followed by 30 other users
+        FollowerStore followerStore = new FollowerStore();
+        if (followerStore.getTopUsersByInfluence(5) != null)
+        {
+            return false;
+        }
+        for (int i = 10; i < 20; i++)
+        {
+            followerStore.addFollower(i, 2, createDate("01/11/2012 10:00"));
+            for (int j = 0; j < 30; j++)
+            {
+                followerStore.addFollower(1000 + i * 30 + j, i, createDate("01/11/2012 10:00"));
+            }
+        }
+
+        // 40 users that nobody follows all follow user 1
+        for (int i = 0; i < 40; i++)
+        {
+            followerStore.addFollower(5000 + i, 1, createDate("02/11/2012 10:00"));
+        }
+
+        // User 1 has the most followers, but user 2 is the most influential, then user 1, then users 10 to 19
+        if (followerStore.getTopUsers(1)[0] != 1 || followerStore.computeInfluence(100) <= 1)
+        {
+            return false;
+        }
+        int[] topUsers = followerStore.getTopUsersByInfluence(12);
+        if (topUsers.length != 12 || topUsers[0] != 2 || topUsers[1] != 1)
+        {
+            return false;
+        }
+        for (int i = 2; i < 12; i++)
+        {
+            if (topUsers[i] < 10 || topUsers[i] >= 20)
+            {
+                return false;
+            }
+        }
+        return followerStore.getTopUsersByInfluence(0).length == 0;
+    }
+
+    /*
+     * Tests that the overlap between the followers of two users is exact for users with few followers, and close to
+     * the real one for users with many followers
+     * @return Returns true is the test passed, false is it failed
+     */
+    protected boolean testEstimateMutualFollowers()
+    {
+        // Create new Follower Store where users 0 to 39 follow user 1, and users 20 to 59 follow user 2
+        FollowerStore followerStore = new FollowerStore();
+        for (int i = 0; i < 60; i++)
+        {
+            if (i < 40)
+            {
+                followerStore.addFollower(i, 1, createDate("01/11/2012 10:00"));
+            }
+            if (i >= 20)
+            {
+                followerStore.addFollower(i, 2, createDate("01/11/2012 10:00"));
+            }
+        }
+
+        // 20 of the 60 users follow both
+        if (followerStore.estimateMutualFollowerCount(1, 2) != 20 || followerStore.estimateJaccard(1, 2) != 20.0 / 60
+            || followerStore.estimateMutualFollowerCount(1, -1) != 0)
+        {
+            return false;
+        }
+
+        // Users 1000 to 5999 follow user 3, and users 4000 to 8999 follow user 4, so 2000 of the 8000 users follow both
+        for (int i = 1000; i < 9000; i++)
+        {
+            if (i < 6000)
+            {
+                followerStore.addFollower(i, 3, createDate("01/11/2012 10:00"));
+            }
+            if (i >= 4000)
+            {
+                followerStore.addFollower(i, 4, createDate("01/11/2012 10:00"));
+            }
+        }
+        int mutual = followerStore.estimateMutualFollowerCount(3, 4);
+        double jaccard = followerStore.estimateJaccard(4, 3);
+        return mutual > 1500 && mutual < 2500 && jaccard > 0.15 && jaccard < 0.35;
+    }
+
+    /*
+     * Tests the follow date range methods, which must include both ends of the range and leave out removed followers
+     * @return Returns true is the test passed, false is it failed
+     */
+    protected boolean testGetFollowersBetween()
+    {
+        // Create new Follower Store where user i + 2 follows user 1 at i o'clock, for i from 0 to 9, out of order
+        FollowerStore followerStore = new FollowerStore();
+        int[] hours = {4, 0, 9, 2, 7, 5, 1, 8, 3, 6};
+        for (int i = 0; i < hours.length; i++)
+        {
+            followerStore.addFollower(hours[i] + 2, 1, createDate("01/11/2012 " + hours[i] + ":00"));
+        }
+        followerStore.removeFollower(5, 1);
+
+        // Both ends of the range are included, the most recent follower comes first, and user 5 no longer follows
+        int[] between = followerStore.getFollowersBetween(1, createDate("01/11/2012 2:00"), createDate("01/11/2012 6:00"));
+        int[] expected = {8, 7, 6, 4};
+        if (between == null || !java.util.Arrays.equals(between, expected)
+            || followerStore.countFollowersGainedBetween(1, createDate("01/11/2012 2:00"), createDate("01/11/2012 6:00")) != 4
+            || followerStore.getFollowersBetween(1, createDate("02/11/2012 0:00"), createDate("03/11/2012 0:00")) != null
+            || followerStore.getFollowersBetween(1, null, createDate("01/11/2012 6:00")) != null)
+        {
+            return false;
+        }
+
+        // An unbounded range still finds every follower once they have been merged, which computing influence does
+        followerStore.computeInfluence(1);
+        int[] all = followerStore.getFollowersBetween(1, new Date(Long.MIN_VALUE), new Date(Long.MAX_VALUE));
+        if (all == null || all.length != 9
+            || followerStore.countFollowersGainedBetween(1, new Date(Long.MIN_VALUE), new Date(Long.MAX_VALUE)) != 9)
+        {
+            return false;
+        }
+
+        // Three-hour periods from midnight to 9:00, the last of which only has the follower at 9:00; user 5 followed at 3:00
+        int[] growth = followerStore.getFollowerGrowth(1, createDate("01/11/2012 0:00"), createDate("01/11/2012 9:00"),
+            3 * 60 * 60 * 1000L);
+        int[] expectedGrowth = {3, 2, 3, 1};
+        if (!java.util.Arrays.equals(growth, expectedGrowth))
+        {
+            return false;
+        }
+
+        // Dates too far apart for their difference to fit in a long still give the right periods, or null if too many
+        int[] extremeGrowth = followerStore.getFollowerGrowth(1, new Date(Long.MIN_VALUE), new Date(Long.MAX_VALUE),
+            Long.MAX_VALUE);
+        int[] expectedExtremeGrowth = {0, 9, 0};
+        return java.util.Arrays.equals(extremeGrowth, expectedExtremeGrowth)
+            && java.util.Arrays.equals(followerStore.getFollowerGrowth(1, new Date(Long.MIN_VALUE), new Date(0),
+                Long.MAX_VALUE), new int[] {0, 0})
+            && followerStore.getFollowerGrowth(1, new Date(-5000000000000000000L), new Date(5000000000000000000L), 1) == null
+            && followerStore.getFollowerGrowth(1, new Date(-5000000000000000000L), new Date(5000000000000000000L), 7) == null;
+    }
+
+    /*
+     * Tests that the store stays consistent while several threads add and remove followers and others read them: a
+     * reader must never see a list with duplicates or a follower that isn't there, and nothing may be lost
+     * @return Returns true is the test passed, false is it failed
+     */
+    protected boolean testConcurrentFollowers()
+    {
+        // Create new Follower Store; users 1 to 4000 follow user 0, user i (i * 37 % 4000) minutes after the start, so
+        // out of date order, and they also follow user 4001, which the even ones stop doing straight away
+        final FollowerStore followerStore = new FollowerStore();
+        final Date start = createDate("01/11/2012 10:00");
+        final AtomicBoolean writing = new AtomicBoolean(true);
+        final AtomicBoolean failed = new AtomicBoolean(false);
+
+        Thread[] writers = new Thread[4];
+        for (int t = 0; t < writers.length; t++)
+        {
+            final int first = t + 1;
+            writers[t] = new Thread(() -> {
+                for (int i = first; i <= 4000; i += 4)
+                {
+                    followerStore.addFollower(i, 0, new Date(start.getTime() + (i * 37 % 4000) * 60000L));
+                    followerStore.addFollower(i, 4001, start);
+                    if (i % 2 == 0)
+                    {
+                        followerStore.removeFollower(i, 4001);
+                    }
+                }
+            });
+        }
+
+        // Readers check every list they get, and that user 0 never loses followers
+        Thread[] readers = new Thread[4];
+        for (int t = 0; t < readers.length; t++)
+        {
+            readers[t] = new Thread(() -> {
+                int seen = 0;
+                while (writing.get() && !failed.get())
+                {
+                    int[] followers = followerStore.getFollowers(0);
+                    if (followers == null)
+                    {
+                        continue;
+                    }
+                    boolean[] listed = new boolean[4001];
+                    for (int i = 0; i < followers.length; i++)
+                    {
+                        if (followers[i] < 1 || followers[i] > 4000 || listed[followers[i]])
+                        {
+                            failed.set(true);
+                        }
+                        listed[followers[i]] = true;
+                    }
+                    if (followers.length < seen || !followerStore.isAFollower(followers[0], 0)
+                        || followerStore.getFollowers(0, 0, 10).length == 0)
+                    {
+                        failed.set(true);
+                    }
+                    seen = followers.length;
+                    followerStore.getMutualFollowers(0, 4001);
+                }
+            });
+        }
+
+        if (!runThreads(writers, readers, writing, failed))
+        {
+            return false;
+        }
+
+        // The most recent follower followed 3999 minutes after the start, and the others one minute earlier each
+        int[] followers = followerStore.getFollowers(0);
+        for (int i = 0; i < followers.length; i++)
+        {
+            if ((followers[i] * 37 % 4000) != 3999 - i)
+            {
+                return false;
+            }
+        }
+        return !failed.get() && followers.length == 4000 && followerStore.getNumFollowers(4001) == 2000;
+    }
+
+    /*
+     * Starts the readers and the writers, waits for the writers to finish, then tells the readers to stop; any
+     * exception thrown by one of the threads sets failed
+     * @return Returns true if all threads finished, false if the test was interrupted
+     */
+    private boolean runThreads(Thread[] writers, Thread[] readers, AtomicBoolean writing, AtomicBoolean failed)
+    {
+        try {
+            for (int t = 0; t < readers.length; t++)
+            {
+                readers[t].setUncaughtExceptionHandler((thread, e) -> failed.set(true));
+                readers[t].start();
+            }
+            for (int t = 0; t < writers.length; t++)
+            {
+                writers[t].setUncaughtExceptionHandler((thread, e) -> failed.set(true));
+                writers[t].start();
+            }
+            for (int t = 0; t < writers.length; t++)
+            {
+                writers[t].join();
+            }
+            writing.set(false);
+            for (int t = 0; t < readers.length; t++)
+            {
+                readers[t].join();
+            }
+            return true;
+        }
+        catch (InterruptedException ie)
+        {
+            return false;
+        }
+    }
+
+    /*
+     * Returns a Date based on the input string
+     * @param inputString Takes a string of form dd/MM/yy hour:minute. Example: 01/03/12 18:00
+     * @return Returns the create Date
+     */
+    private Date createDate(String inputString)
+    {
+        try {
+            // Take input string and create date
+            DateFormat dateFormatter = new SimpleDateFormat("dd/MM/yy H:m");
+            return dateFormatter.parse(inputString);
+        }
+        catch (ParseException pe)
+        {
+            // Bad input string
+            System.out.println("Couldn't parse " + inputString);
+            return new Date();
+        }
+    }
+}
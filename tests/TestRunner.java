@@ -40,20 +40,308 @@ public class TestRunner
             System.out.println("...fail.");
         }
 
+        // Call our get weets containing method, checking the order of the results as well
+        System.out.print("--> testGetWeetsContaining : \t");
+        boolean testGetWeetsContaining = e.testGetWeetsContaining();
+        if (testGetWeetsContaining == true) {
+            System.out.println("...success");
+        }
+        else {
+            System.out.println("...fail.");
+        }
+
+        // Call our get weets by user method, with and without a page
+        System.out.print("--> testGetWeetsByUser : \t");
+        boolean testGetWeetsByUser = e.testGetWeetsByUser();
+        if (testGetWeetsByUser == true) {
+            System.out.println("...success");
+        }
+        else {
+            System.out.println("...fail.");
+        }
+
+        // Call our get trending method, checking the ranking of the topics
+        System.out.print("--> testGetTrending : \t");
+        boolean testGetTrending = e.testGetTrending();
+        if (testGetTrending == true) {
+            System.out.println("...success");
+        }
+        else {
+            System.out.println("...fail.");
+        }
+
+        // Call our windowed and decayed get trending methods
+        System.out.print("--> testGetTrendingWindow : \t");
+        boolean testGetTrendingWindow = e.testGetTrendingWindow();
+        if (testGetTrendingWindow == true) {
+            System.out.println("...success");
+        }
+        else {
+            System.out.println("...fail.");
+        }
+
+        // Call our hashtag test, comparing the topics found with those found by a regex
+        System.out.print("--> testTrendingHashtags : \t");
+        boolean testTrendingHashtags = e.testTrendingHashtags();
+        if (testTrendingHashtags == true) {
+            System.out.println("...success");
+        }
+        else {
+            System.out.println("...fail.");
+        }
+
+        // Call our bulk add method, comparing it with adding weets one by one
+        System.out.print("--> testAddWeets : \t");
+        boolean testAddWeets = e.testAddWeets();
+        if (testAddWeets == true) {
+            System.out.println("...success");
+        }
+        else {
+            System.out.println("...fail.");
+        }
 
-        // TODO: Test remaining IWeetStore methods (pass and fail).
-        //
-            System.out.println("...I need to add more tests to the WeetStore");
-        
+        // Call our date range methods, checking that both ends of the range are included
+        System.out.print("--> testGetWeetsBetween : \t");
+        boolean testGetWeetsBetween = e.testGetWeetsBetween();
+        if (testGetWeetsBetween == true) {
+            System.out.println("...success");
+        }
+        else {
+            System.out.println("...fail.");
+        }
+
+        // Call our count and page methods, which rely on the sizes kept in the date tree
+        System.out.print("--> testCountAndPageWeets : \t");
+        boolean testCountAndPageWeets = e.testCountAndPageWeets();
+        if (testCountAndPageWeets == true) {
+            System.out.println("...success");
+        }
+        else {
+            System.out.println("...fail.");
+        }
+
+        // Call our get weets on method, checking both ends of the day and other time zones
+        System.out.print("--> testGetWeetsOn : \t");
+        boolean testGetWeetsOn = e.testGetWeetsOn();
+        if (testGetWeetsOn == true) {
+            System.out.println("...success");
+        }
+        else {
+            System.out.println("...fail.");
+        }
+
+        // Call our home timeline method, which merges the weets of the users followed
+        System.out.print("--> testGetTimeline : \t");
+        boolean testGetTimeline = e.testGetTimeline();
+        if (testGetTimeline == true) {
+            System.out.println("...success");
+        }
+        else {
+            System.out.println("...fail.");
+        }
+
+        // Call our timeline cache test, comparing the timelines filled on write with the weets merged on read
+        System.out.print("--> testTimelineCache : \t");
+        boolean testTimelineCache = e.testTimelineCache();
+        if (testTimelineCache == true) {
+            System.out.println("...success");
+        }
+        else {
+            System.out.println("...fail.");
+        }
+
+        // Call our concurrency test, with threads adding weets while others read them
+        System.out.print("--> testConcurrentWeets : \t");
+        boolean testConcurrentWeets = e.testConcurrentWeets();
+        if (testConcurrentWeets == true) {
+            System.out.println("...success");
+        }
+        else {
+            System.out.println("...fail.");
+        }
 
         // User Tests
-        // TODO: Test IUserStore methods (pass and fail).
-            System.out.println("--> I need to make and complete UserTests.java");
+        UserTests u = new UserTests();
+        System.out.println("[Testing Users]");
+
+        // Call our get user method, checking both users that were added and IDs that weren't
+        System.out.print("--> testGetUser : \t");
+        boolean testGetUser = u.testGetUser();
+        if (testGetUser == true) {
+            System.out.println("...success");
+        }
+        else {
+            System.out.println("...fail.");
+        }
+
+        // Call our bulk add method, comparing it with adding users one by one
+        System.out.print("--> testAddUsers : \t");
+        boolean testAddUsers = u.testAddUsers();
+        if (testAddUsers == true) {
+            System.out.println("...success");
+        }
+        else {
+            System.out.println("...fail.");
+        }
+
+        // Call our count and page methods, which rely on the sizes kept in the date tree
+        System.out.print("--> testCountAndPageUsers : \t");
+        boolean testCountAndPageUsers = u.testCountAndPageUsers();
+        if (testCountAndPageUsers == true) {
+            System.out.println("...success");
+        }
+        else {
+            System.out.println("...fail.");
+        }
+
+        // Call our concurrency test, with threads adding users while others read them
+        System.out.print("--> testConcurrentUsers : \t");
+        boolean testConcurrentUsers = u.testConcurrentUsers();
+        if (testConcurrentUsers == true) {
+            System.out.println("...success");
+        }
+        else {
+            System.out.println("...fail.");
+        }
+
+        // TODO: Test remaining IUserStore methods (pass and fail).
 
 
         // Follower Tests
-        // TODO: Test IFollowerStore methods (pass and fail).
-            System.out.println("--> I need to make and complete FollowerTests.java");
+        FollowerTests f = new FollowerTests();
+        System.out.println("[Testing Followers]");
+
+        // Call our is a follower method, for many users and for a user that doesn't exist
+        System.out.print("--> testIsAFollower : \t");
+        boolean testIsAFollower = f.testIsAFollower();
+        if (testIsAFollower == true) {
+            System.out.println("...success");
+        }
+        else {
+            System.out.println("...fail.");
+        }
+
+        // Call our test for a user with many followers, which are also kept in a set
+        System.out.print("--> testManyFollowers : \t");
+        boolean testManyFollowers = f.testManyFollowers();
+        if (testManyFollowers == true) {
+            System.out.println("...success");
+        }
+        else {
+            System.out.println("...fail.");
+        }
+
+        // Call our bulk add method, comparing it with adding relationships one by one
+        System.out.print("--> testAddFollowers : \t");
+        boolean testAddFollowers = f.testAddFollowers();
+        if (testAddFollowers == true) {
+            System.out.println("...success");
+        }
+        else {
+            System.out.println("...fail.");
+        }
+
+        // Call our mutual followers method, for a user with many followers and one with a few
+        System.out.print("--> testGetMutualFollowers : \t");
+        boolean testGetMutualFollowers = f.testGetMutualFollowers();
+        if (testGetMutualFollowers == true) {
+            System.out.println("...success");
+        }
+        else {
+            System.out.println("...fail.");
+        }
+
+        // Call our paged followers method, for followers that didn't follow in date order
+        System.out.print("--> testGetFollowersPage : \t");
+        boolean testGetFollowersPage = f.testGetFollowersPage();
+        if (testGetFollowersPage == true) {
+            System.out.println("...success");
+        }
+        else {
+            System.out.println("...fail.");
+        }
+
+        // Call our top users method, which must rank users by number of followers rather than by ID
+        System.out.print("--> testGetTopUsers : \t");
+        boolean testGetTopUsers = f.testGetTopUsers();
+        if (testGetTopUsers == true) {
+            System.out.println("...success");
+        }
+        else {
+            System.out.println("...fail.");
+        }
+
+        // Call our remove follower method, before and after the relationships are merged into the graphs
+        System.out.print("--> testRemoveFollower : \t");
+        boolean testRemoveFollower = f.testRemoveFollower();
+        if (testRemoveFollower == true) {
+            System.out.println("...success");
+        }
+        else {
+            System.out.println("...fail.");
+        }
+
+        // Call our recommend method, which must leave out users who are already followed
+        System.out.print("--> testRecommend : \t");
+        boolean testRecommend = f.testRecommend();
+        if (testRecommend == true) {
+            System.out.println("...success");
+        }
+        else {
+            System.out.println("...fail.");
+        }
+
+        // Call our distance and shortest path methods, along a chain of follows and through a shortcut
+        System.out.print("--> testDistance : \t");
+        boolean testDistance = f.testDistance();
+        if (testDistance == true) {
+            System.out.println("...success");
+        }
+        else {
+            System.out.println("...fail.");
+        }
+
+        // Call our influence methods, for a user followed by many users that nobody follows
+        System.out.print("--> testComputeInfluence : \t");
+        boolean testComputeInfluence = f.testComputeInfluence();
+        if (testComputeInfluence == true) {
+            System.out.println("...success");
+        }
+        else {
+            System.out.println("...fail.");
+        }
+
+        // Call our audience overlap estimates, for users with few followers and users with many
+        System.out.print("--> testEstimateMutualFollowers : \t");
+        boolean testEstimateMutualFollowers = f.testEstimateMutualFollowers();
+        if (testEstimateMutualFollowers == true) {
+            System.out.println("...success");
+        }
+        else {
+            System.out.println("...fail.");
+        }
+
+        // Call our follow date range methods, checking that both ends of the range are included
+        System.out.print("--> testGetFollowersBetween : \t");
+        boolean testGetFollowersBetween = f.testGetFollowersBetween();
+        if (testGetFollowersBetween == true) {
+            System.out.println("...success");
+        }
+        else {
+            System.out.println("...fail.");
+        }
+
+        // Call our concurrency test, with threads adding and removing followers while others read them
+        System.out.print("--> testConcurrentFollowers : \t");
+        boolean testConcurrentFollowers = f.testConcurrentFollowers();
+        if (testConcurrentFollowers == true) {
+            System.out.println("...success");
+        }
+        else {
+            System.out.println("...fail.");
+        }
+
+        // TODO: Test remaining IFollowerStore methods (pass and fail).
     
     }
 
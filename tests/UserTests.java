@@ -0,0 +1,223 @@
+import java.util.Date;
+import java.text.DateFormat;
+import java.text.SimpleDateFormat;
+import java.text.ParseException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import uk.ac.warwick.java.cs126.services.UserStore;
+import uk.ac.warwick.java.cs126.models.User;
+
+class UserTests {
+
+
+    /*
+     * Tests that users can be found by ID once many of them have been added, and that missing IDs are not found
+     * @return Returns true is the test passed, false is it failed
+     */
+    protected boolean testGetUser()
+    {
+        // Create new User Store with enough users for its tables to grow several times
+        UserStore userStore = new UserStore();
+        for (int i = 0; i < 1000; i++)
+        {
+            if (!userStore.addUser( new User("User " + i, i * 7919, createDate("01/10/2012 10:00")) ))
+            {
+                return false;
+            }
+        }
+
+        // An ID can only be used once
+        if (userStore.addUser( new User("Copy", 7919, createDate("02/10/2012 10:00")) ))
+        {
+            return false;
+        }
+        for (int i = 0; i < 1000; i++)
+        {
+            User user = userStore.getUser(i * 7919);
+            if (user == null || !user.getName().equals("User " + i))
+            {
+                return false;
+            }
+        }
+        return userStore.getUser(1) == null && userStore.getUser(-7919) == null;
+    }
+
+    /*
+     * Tests that adding users in bulk gives the same store as adding them one by one
+     * @return Returns true is the test passed, false is it failed
+     */
+    protected boolean testAddUsers()
+    {
+        // Create two new User Stores that already contain a user
+        UserStore oneByOne = new UserStore();
+        UserStore bulk = new UserStore();
+        User existing = new User("Alice", 3, createDate("02/11/2012 10:00"));
+        oneByOne.addUser( existing );
+        bulk.addUser( existing );
+
+        // The batch repeats an ID, reuses the existing ID and has several users with the same join date
+        User[] users = {
+            new User("Bob", 1, createDate("02/11/2012 10:00")),
+            new User("Carol", 2, createDate("01/11/2012 10:00")),
+            new User("Dave", 1, createDate("03/11/2012 10:00")),
+            new User("Eve", 3, createDate("03/11/2012 10:00")),
+            new User("Frank", 4, createDate("02/11/2012 10:00"))
+        };
+
+        int added = 0;
+        for (int i = 0; i < users.length; i++)
+        {
+            if (oneByOne.addUser(users[i]))
+            {
+                added++;
+            }
+        }
+
+        if (bulk.addUsers(users) != added || added != 3)
+        {
+            return false;
+        }
+        if (!java.util.Arrays.equals(oneByOne.getUsers(), bulk.getUsers()))
+        {
+            return false;
+        }
+        return bulk.getUser(1) == users[0] && bulk.getUser(3) == existing;
+    }
+
+    /*
+     * Tests that users can be counted by join date and paged through, starting with the most recent
+     * @return Returns true is the test passed, false is it failed
+     */
+    protected boolean testCountAndPageUsers()
+    {
+        // Create new User Store with one user joining per day in October
+        UserStore userStore = new UserStore();
+        for (int day = 1; day <= 31; day++)
+        {
+            userStore.addUser( new User("User " + day, day, createDate(day + "/10/2012 10:00")) );
+        }
+
+        if (userStore.countUsersJoinedBefore(createDate("10/10/2012 09:00")) != 9)
+        {
+            return false;
+        }
+
+        User[] page = userStore.getUsers(5, 3);
+        if (page.length != 3 || page[0].getId() != 26 || page[2].getId() != 24)
+        {
+            return false;
+        }
+        return userStore.getUsers(31, 10).length == 0;
+    }
+
+    /*
+     * Tests that the store stays consistent while several threads add users and others read them: a user found in the
+     * tree must also be found by ID, pages must stay in join date order, and no user may be lost
+     * @return Returns true is the test passed, false is it failed
+     */
+    protected boolean testConcurrentUsers()
+    {
+        // Create new User Store; four threads add 1000 users each, user i joining (i * 37 % 4000) minutes after the
+        // start, so out of date order; the last thread adds them in batches
+        final UserStore userStore = new UserStore();
+        final Date start = createDate("01/10/2012 10:00");
+        final AtomicBoolean writing = new AtomicBoolean(true);
+        final AtomicBoolean failed = new AtomicBoolean(false);
+
+        Thread[] threads = new Thread[8];
+        for (int t = 0; t < 4; t++)
+        {
+            final int first = t * 1000;
+            threads[t] = new Thread(() -> {
+                User[] batch = new User[100];
+                for (int i = first; i < first + 1000; i++)
+                {
+                    User user = new User("User " + i, i, new Date(start.getTime() + (i * 37 % 4000) * 60000L));
+                    if (first < 3000)
+                    {
+                        userStore.addUser( user );
+                    }
+                    else
+                    {
+                        batch[i % 100] = user;
+                        if (i % 100 == 99)
+                        {
+                            userStore.addUsers( batch );
+                        }
+                    }
+                }
+            });
+        }
+
+        // Readers check the latest page of users
+        for (int t = 4; t < threads.length; t++)
+        {
+            threads[t] = new Thread(() -> {
+                while (writing.get() && !failed.get())
+                {
+                    User[] page = userStore.getUsers(0, 50);
+                    for (int i = 0; i < page.length; i++)
+                    {
+                        if (userStore.getUser(page[i].getId()) != page[i]
+                            || (i > 0 && !page[i].getDateJoined().before(page[i - 1].getDateJoined())))
+                        {
+                            failed.set(true);
+                        }
+                    }
+                }
+            });
+        }
+
+        try {
+            for (int t = threads.length - 1; t >= 0; t--)
+            {
+                threads[t].setUncaughtExceptionHandler((thread, e) -> failed.set(true));
+                threads[t].start();
+            }
+            for (int t = 0; t < 4; t++)
+            {
+                threads[t].join();
+            }
+            writing.set(false);
+            for (int t = 4; t < threads.length; t++)
+            {
+                threads[t].join();
+            }
+        }
+        catch (InterruptedException ie)
+        {
+            return false;
+        }
+
+        // The user who joined last joined 3999 minutes after the start, and the others one minute earlier each
+        User[] users = userStore.getUsers();
+        for (int i = 0; i < users.length; i++)
+        {
+            if ((users[i].getId() * 37 % 4000) != 3999 - i)
+            {
+                return false;
+            }
+        }
+        return !failed.get() && users.length == 4000;
+    }
+
+    /*
+     * Returns a Date based on the input string
+     * @param inputString Takes a string of form dd/MM/yy hour:minute. Example: 01/03/12 18:00
+     * @return Returns the create Date
+     */
+    private Date createDate(String inputString)
+    {
+        try {
+            // Take input string and create date
+            DateFormat dateFormatter = new SimpleDateFormat("dd/MM/yy H:m");
+            return dateFormatter.parse(inputString);
+        }
+        catch (ParseException pe)
+        {
+            // Bad input string
+            System.out.println("Couldn't parse " + inputString);
+            return new Date();
+        }
+    }
+}
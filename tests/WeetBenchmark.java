@@ -0,0 +1,80 @@
+import java.util.Date;
+import java.util.Random;
+
+import uk.ac.warwick.java.cs126.services.WeetStore;
+import uk.ac.warwick.java.cs126.models.Weet;
+
+/*
+ * Measures how many weets per second WeetStore can ingest through addWeet, on synthetic weets that
+ * contain a few hashtags each. Compile and run it like TestRunner:
+ *
+ *     java -cp witter-models.jar:. WeetBenchmark [number of weets]
+ */
+public class WeetBenchmark
+{
+    public static void main(String[] args)
+    {
+        int weetCount = 200000;
+        if (args.length > 0) {
+            weetCount = Integer.parseInt(args[0]);
+        }
+
+        Weet[] weets = createWeets(weetCount);
+
+        // The first run only warms up the JIT compiler, and is not reported
+        ingest(weets);
+
+        System.out.println("[Benchmarking addWeet with " + weetCount + " weets]");
+        for (int run = 1; run <= 3; run++) {
+            long time = ingest(weets);
+            System.out.println("--> run " + run + " : \t" + (time / 1000000) + " ms, "
+                + (long) (weetCount / (time / 1e9)) + " weets/s");
+        }
+    }
+
+    /*
+     * Adds all weets to an empty WeetStore
+     * @return Returns the time taken, in nanoseconds
+     */
+    private static long ingest(Weet[] weets)
+    {
+        WeetStore weetStore = new WeetStore();
+        long start = System.nanoTime();
+
+        for (int i = 0; i < weets.length; i++) {
+            weetStore.addWeet(weets[i]);
+        }
+        return System.nanoTime() - start;
+    }
+
+    /*
+     * Creates weets one minute apart, each made of a few words and up to three hashtags; popular hashtags are
+     * much more likely to be picked than the rest, as they would be on the real site
+     * @return Returns the created weets
+     */
+    private static Weet[] createWeets(int weetCount)
+    {
+        String[] words = { "hello", "world", "java", "witter", "today", "great", "lecture", "coursework", "tree", "hash" };
+        Random random = new Random(126);
+        Weet[] weets = new Weet[weetCount];
+        long time = 1350000000000L;
+
+        for (int i = 0; i < weetCount; i++) {
+            StringBuilder message = new StringBuilder();
+            int wordCount = 4 + random.nextInt(8);
+            int tagCount = random.nextInt(4);
+
+            for (int j = 0; j < wordCount; j++) {
+                message.append(words[random.nextInt(words.length)]).append(' ');
+            }
+            for (int j = 0; j < tagCount; j++) {
+                // squaring a uniform number favours small tag numbers
+                double skew = random.nextDouble();
+                message.append("#tag").append((int) (skew * skew * 50000)).append(' ');
+            }
+
+            weets[i] = new Weet(i, random.nextInt(10000), message.toString(), new Date(time + i * 60000L));
+        }
+        return weets;
+    }
+}
@@ -1,11 +1,19 @@
 import java.util.Date;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.text.ParseException;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import uk.ac.warwick.java.cs126.services.IWeetStore;
 import uk.ac.warwick.java.cs126.services.WeetStore;
+import uk.ac.warwick.java.cs126.services.FollowerStore;
 import uk.ac.warwick.java.cs126.models.Weet;
+import uk.ac.warwick.java.cs126.models.User;
 
 class WeetTests {
     
@@ -91,6 +99,575 @@ class WeetTests {
         }
     }
 
+    /*
+     * Tests that substring queries return every matching weet, newest first, for both short and long queries
+     * @return Returns true is the test passed, false is it failed
+     */
+    protected boolean testGetWeetsContaining()
+    {
+        // Create new Weet Store
+        IWeetStore weetStore = new WeetStore();
+
+        // Add weets out of date order, two of them with the same date
+        Weet oldest = new Weet(1, 1, "Hello World!", createDate("01/11/2012 10:00"));
+        Weet newest = new Weet(2, 2, "Goodbye world, hello moon", createDate("03/11/2012 10:00"));
+        Weet middleFirst = new Weet(3, 1, "say hello", createDate("02/11/2012 10:00"));
+        Weet middleSecond = new Weet(4, 3, "nothing to see here", createDate("02/11/2012 10:00"));
+        Weet middleThird = new Weet(5, 2, "hello again", createDate("02/11/2012 10:00"));
+        weetStore.addWeet( oldest );
+        weetStore.addWeet( newest );
+        weetStore.addWeet( middleFirst );
+        weetStore.addWeet( middleSecond );
+        weetStore.addWeet( middleThird );
+
+        // Weets with equal dates are expected in the order they were added
+        Weet[] hello = weetStore.getWeetsContaining("hello");
+        Weet[] expected = { newest, middleFirst, middleThird };
+        if (hello == null || hello.length != expected.length)
+        {
+            return false;
+        }
+        for (int i = 0; i < expected.length; i++)
+        {
+            if (hello[i] != expected[i])
+            {
+                return false;
+            }
+        }
+
+        // Queries shorter than three characters and queries with no match must still work
+        Weet[] shortQuery = weetStore.getWeetsContaining("He");
+        Weet[] noMatch = weetStore.getWeetsContaining("hellos");
+        if (shortQuery == null || shortQuery.length != 1 || shortQuery[0] != oldest || noMatch != null)
+        {
+            return false;
+        }
+        return true;
+    }
+
+    /*
+     * Tests that a user's weets are returned newest first, and that pages of them can be requested
+     * @return Returns true is the test passed, false is it failed
+     */
+    protected boolean testGetWeetsByUser()
+    {
+        // Create new Weet Store
+        WeetStore weetStore = new WeetStore();
+        User user = new User("Alice", 1, createDate("01/01/2012 00:00"));
+
+        // Add the user's weets out of date order, along with a weet by someone else
+        Weet second = new Weet(1, 1, "second", createDate("02/11/2012 10:00"));
+        Weet first = new Weet(2, 1, "first", createDate("01/11/2012 10:00"));
+        Weet third = new Weet(3, 1, "third", createDate("03/11/2012 10:00"));
+        Weet other = new Weet(4, 2, "someone else", createDate("02/11/2012 12:00"));
+        weetStore.addWeet( second );
+        weetStore.addWeet( first );
+        weetStore.addWeet( third );
+        weetStore.addWeet( other );
+
+        Weet[] all = weetStore.getWeetsByUser(user);
+        Weet[] page = weetStore.getWeetsByUser(user, 1, 5);
+        Weet[] none = weetStore.getWeetsByUser(new User("Bob", 3, createDate("01/01/2012 00:00")));
+
+        if (all.length != 3 || all[0] != third || all[1] != second || all[2] != first)
+        {
+            return false;
+        }
+        if (page.length != 2 || page[0] != second || page[1] != first)
+        {
+            return false;
+        }
+        return none.length == 0;
+    }
+
+    /*
+     * Tests that trending topics are ranked by the number of times they were used
+     * @return Returns true is the test passed, false is it failed
+     */
+    protected boolean testGetTrending()
+    {
+        // Create new Weet Store
+        WeetStore weetStore = new WeetStore();
+
+        // #java is used three times, #witter twice and #cs126 once
+        weetStore.addWeet( new Weet(1, 1, "#cs126 #witter", createDate("01/11/2012 10:00")) );
+        weetStore.addWeet( new Weet(2, 1, "learning #java", createDate("02/11/2012 10:00")) );
+        weetStore.addWeet( new Weet(3, 2, "#java and #witter", createDate("03/11/2012 10:00")) );
+        weetStore.addWeet( new Weet(4, 3, "more #java", createDate("04/11/2012 10:00")) );
+
+        String[] trending = weetStore.getTrending();
+        String[] topTwo = weetStore.getTrending(2);
+
+        if (trending.length != 10 || trending[3] != null)
+        {
+            return false;
+        }
+        if (!"#java".equals(trending[0]) || !"#witter".equals(trending[1]) || !"#cs126".equals(trending[2]))
+        {
+            return false;
+        }
+        if (weetStore.getTrending(-1).length != 0)
+        {
+            return false;
+        }
+        return topTwo.length == 2 && "#java".equals(topTwo[0]) && "#witter".equals(topTwo[1]);
+    }
+
+    /*
+     * Tests that topics are ranked by their uses within a window of time, and that recent uses weigh more
+     * @return Returns true is the test passed, false is it failed
+     */
+    protected boolean testGetTrendingWindow()
+    {
+        // Create new Weet Store
+        WeetStore weetStore = new WeetStore();
+
+        // #old is used a lot in October, #new a little in November
+        weetStore.addWeet( new Weet(1, 1, "#old", createDate("01/10/2012 10:00")) );
+        weetStore.addWeet( new Weet(2, 1, "#old", createDate("02/10/2012 10:00")) );
+        weetStore.addWeet( new Weet(3, 2, "#old", createDate("03/10/2012 10:00")) );
+        weetStore.addWeet( new Weet(4, 2, "#new", createDate("01/11/2012 10:00")) );
+        weetStore.addWeet( new Weet(5, 3, "#new", createDate("01/11/2012 11:00")) );
+
+        String[] allTime = weetStore.getTrending();
+        String[] november = weetStore.getTrending(createDate("01/11/2012 00:00"), createDate("02/11/2012 00:00"));
+        String[] october = weetStore.getTrending(createDate("02/10/2012 00:00"), createDate("03/10/2012 00:00"));
+        String[] decayed = weetStore.getTrendingDecayed();
+        String[] openEnded = weetStore.getTrending(new Date(0), new Date(Long.MAX_VALUE));
+        String[] farFuture = weetStore.getTrending(new Date(Long.MAX_VALUE - 5), new Date(Long.MAX_VALUE));
+        String[] farPast = weetStore.getTrending(new Date(Long.MIN_VALUE), new Date(-5000000000000000000L));
+
+        if (!"#old".equals(allTime[0]) || !"#new".equals(allTime[1]))
+        {
+            return false;
+        }
+        if (!"#old".equals(openEnded[0]) || !"#new".equals(openEnded[1]) || openEnded[2] != null)
+        {
+            return false;
+        }
+        if (farFuture[0] != null || farPast[0] != null)
+        {
+            return false;
+        }
+        if (!"#new".equals(november[0]) || november[1] != null)
+        {
+            return false;
+        }
+        if (!"#old".equals(october[0]) || october[1] != null)
+        {
+            return false;
+        }
+        if (weetStore.getTrending(createDate("01/10/2012 00:00"), createDate("02/11/2012 00:00"), -1).length != 0
+            || weetStore.getTrendingDecayed(-1).length != 0)
+        {
+            return false;
+        }
+        return "#new".equals(decayed[0]) && "#old".equals(decayed[1]);
+    }
+
+    /*
+     * Tests that hashtags are found exactly as the regex #(\w+|\W+) would find them, including unusual ones
+     * @return Returns true is the test passed, false is it failed
+     */
+    protected boolean testTrendingHashtags()
+    {
+        // Create new Weet Store
+        WeetStore weetStore = new WeetStore();
+        String[] messages = { "#java is #fun", "##java", "# spaces #", "#a#b#c", "#!?#java", "caf\u00e9 #caf\u00e9",
+            "#java_8 #java", "#fun, #fun.", "ends with #" };
+        java.util.HashMap<String, Integer> expected = new java.util.HashMap<String, Integer>();
+        Pattern pattern = Pattern.compile("#(\\w+|\\W+)");
+
+        // Count every hashtag with the regex, and add the weets to the store
+        for (int i = 0; i < messages.length; i++)
+        {
+            Matcher match = pattern.matcher(messages[i]);
+            while (match.find())
+            {
+                Integer count = expected.get(match.group(1));
+                expected.put(match.group(1), count == null ? 1 : count + 1);
+            }
+            weetStore.addWeet( new Weet(i, 1, messages[i], createDate("01/11/2012 10:00")) );
+        }
+
+        // Every topic must be trending exactly once, ranked by the number of times the regex found it
+        String[] trending = weetStore.getTrending(expected.size() + 1);
+        if (trending[expected.size()] != null)
+        {
+            return false;
+        }
+        int previousCount = Integer.MAX_VALUE;
+        for (int i = 0; i < expected.size(); i++)
+        {
+            Integer count = trending[i] == null ? null : expected.remove(trending[i].substring(1));
+            if (count == null || count > previousCount)
+            {
+                return false;
+            }
+            previousCount = count;
+        }
+        return true;
+    }
+
+    /*
+     * Tests that adding weets in bulk gives the same store as adding them one by one
+     * @return Returns true is the test passed, false is it failed
+     */
+    protected boolean testAddWeets()
+    {
+        // Create two new Weet Stores that already contain a weet
+        WeetStore oneByOne = new WeetStore();
+        WeetStore bulk = new WeetStore();
+        Weet existing = new Weet(3, 1, "already here #java", createDate("02/11/2012 10:00"));
+        oneByOne.addWeet( existing );
+        bulk.addWeet( existing );
+
+        // The batch repeats an ID, reuses the existing ID and has several weets with the same date
+        Weet[] weets = {
+            new Weet(1, 1, "first #java", createDate("02/11/2012 10:00")),
+            new Weet(2, 2, "second #witter", createDate("01/11/2012 10:00")),
+            new Weet(1, 3, "same ID as the first", createDate("03/11/2012 10:00")),
+            new Weet(3, 3, "same ID as the existing weet", createDate("03/11/2012 10:00")),
+            new Weet(4, 2, "third #java", createDate("02/11/2012 10:00"))
+        };
+
+        int added = 0;
+        for (int i = 0; i < weets.length; i++)
+        {
+            if (oneByOne.addWeet(weets[i]))
+            {
+                added++;
+            }
+        }
+
+        if (bulk.addWeets(weets) != added || added != 3)
+        {
+            return false;
+        }
+        if (!java.util.Arrays.equals(oneByOne.getWeets(), bulk.getWeets()))
+        {
+            return false;
+        }
+        return bulk.getWeet(1) == weets[0] && bulk.getWeet(3) == existing
+            && java.util.Arrays.equals(oneByOne.getTrending(), bulk.getTrending());
+    }
+
+    /*
+     * Tests that getWeetsBefore and getWeetsBetween only return weets in the range, newest first
+     * @return Returns true is the test passed, false is it failed
+     */
+    protected boolean testGetWeetsBetween()
+    {
+        // Create new Weet Store
+        WeetStore weetStore = new WeetStore();
+        Weet first = new Weet(1, 1, "first", createDate("01/10/2012 10:00"));
+        Weet second = new Weet(2, 1, "second", createDate("02/10/2012 10:00"));
+        Weet third = new Weet(3, 2, "third", createDate("03/10/2012 10:00"));
+        Weet fourth = new Weet(4, 2, "fourth", createDate("04/10/2012 10:00"));
+        weetStore.addWeet( third );
+        weetStore.addWeet( first );
+        weetStore.addWeet( fourth );
+        weetStore.addWeet( second );
+
+        // Both ends of the range are included
+        Weet[] between = weetStore.getWeetsBetween(createDate("02/10/2012 10:00"), createDate("03/10/2012 10:00"));
+        Weet[] before = weetStore.getWeetsBefore(createDate("02/10/2012 12:00"));
+
+        if (between == null || between.length != 2 || between[0] != third || between[1] != second)
+        {
+            return false;
+        }
+        if (before == null || before.length != 2 || before[0] != second || before[1] != first)
+        {
+            return false;
+        }
+        return weetStore.getWeetsBetween(createDate("05/10/2012 00:00"), createDate("06/10/2012 00:00")) == null;
+    }
+
+    /*
+     * Tests that weets can be counted by date and paged through, starting with the most recent
+     * @return Returns true is the test passed, false is it failed
+     */
+    protected boolean testCountAndPageWeets()
+    {
+        // Create new Weet Store with one weet per day in October
+        WeetStore weetStore = new WeetStore();
+        for (int day = 1; day <= 31; day++)
+        {
+            weetStore.addWeet( new Weet(day, 1, "day " + day, createDate(day + "/10/2012 10:00")) );
+        }
+
+        if (weetStore.countWeetsBefore(createDate("10/10/2012 10:00")) != 10)
+        {
+            return false;
+        }
+        if (weetStore.countWeetsBetween(createDate("05/10/2012 00:00"), createDate("14/10/2012 23:00")) != 10)
+        {
+            return false;
+        }
+
+        // The third page of ten starts with the weet from the 11th
+        Weet[] page = weetStore.getWeets(20, 10);
+        if (page.length != 10 || page[0].getId() != 11 || page[9].getId() != 2)
+        {
+            return false;
+        }
+        return weetStore.getWeets(30, 10).length == 1 && weetStore.getWeets(40, 10).length == 0;
+    }
+
+    /*
+     * Tests that getWeetsOn and getWeetsOnDay return every weet of a calendar day, and only those
+     * @return Returns true is the test passed, false is it failed
+     */
+    protected boolean testGetWeetsOn()
+    {
+        // Create new Weet Store
+        WeetStore weetStore = new WeetStore();
+        Weet morning = new Weet(1, 1, "morning", createDate("02/10/2012 08:00"));
+        Weet evening = new Weet(2, 1, "evening", createDate("02/10/2012 23:30"));
+        weetStore.addWeet( new Weet(3, 2, "day before", createDate("01/10/2012 23:59")) );
+        weetStore.addWeet( evening );
+        weetStore.addWeet( morning );
+        weetStore.addWeet( new Weet(4, 2, "day after", createDate("03/10/2012 00:00")) );
+
+        // Any time of the day gives all weets of that day, starting with the most recent
+        Weet[] onDay = weetStore.getWeetsOn(createDate("02/10/2012 12:00"));
+        if (onDay == null || onDay.length != 2 || onDay[0] != evening || onDay[1] != morning)
+        {
+            return false;
+        }
+
+        // In a time zone three hours ahead of the default one, the evening weet is posted on the next day
+        int localOffset = ZoneId.systemDefault().getRules().getOffset(morning.getDateWeeted().toInstant()).getTotalSeconds();
+        ZoneId ahead = ZoneOffset.ofTotalSeconds(localOffset + 3 * 60 * 60);
+        Weet[] aheadDay = weetStore.getWeetsOnDay(LocalDate.of(2012, 10, 2), ahead);
+        if (aheadDay == null || aheadDay.length != 2 || aheadDay[0] != morning || aheadDay[1].getId() != 3)
+        {
+            return false;
+        }
+        return weetStore.getWeetsOn(createDate("05/10/2012 12:00")) == null;
+    }
+
+    /*
+     * Tests that a home timeline merges the weets of the users followed, newest first, and stops at the limit
+     * @return Returns true is the test passed, false is it failed
+     */
+    protected boolean testGetTimeline()
+    {
+        // Create new Weet Store and Follower Store where user 1 follows users 2, 3 and 4, who has never weeted
+        WeetStore weetStore = new WeetStore();
+        FollowerStore followerStore = new FollowerStore();
+        weetStore.setFollowerStore(followerStore);
+        followerStore.addFollower(1, 2, createDate("01/10/2012 10:00"));
+        followerStore.addFollower(1, 3, createDate("01/10/2012 10:00"));
+        followerStore.addFollower(1, 4, createDate("01/10/2012 10:00"));
+
+        // Add weets by the users followed out of date order, along with weets by user 1 and by someone not followed
+        Weet a = new Weet(1, 2, "a", createDate("01/11/2012 10:00"));
+        Weet b = new Weet(2, 3, "b", createDate("02/11/2012 10:00"));
+        Weet c = new Weet(3, 2, "c", createDate("04/11/2012 10:00"));
+        Weet d = new Weet(4, 3, "d", createDate("03/11/2012 10:00"));
+        Weet e = new Weet(5, 2, "e", createDate("05/11/2012 10:00"));
+        weetStore.addWeet( c );
+        weetStore.addWeet( a );
+        weetStore.addWeet( e );
+        weetStore.addWeet( b );
+        weetStore.addWeet( d );
+        weetStore.addWeet( new Weet(6, 1, "mine", createDate("03/11/2012 12:00")) );
+        weetStore.addWeet( new Weet(7, 5, "not followed", createDate("03/11/2012 12:00")) );
+
+        Weet[] latest = weetStore.getTimeline(1, 3);
+        Weet[] before = weetStore.getTimeline(1, createDate("04/11/2012 10:00"), 10);
+        if (latest.length != 3 || latest[0] != e || latest[1] != c || latest[2] != d)
+        {
+            return false;
+        }
+        if (before.length != 4 || before[0] != c || before[1] != d || before[2] != b || before[3] != a)
+        {
+            return false;
+        }
+        return weetStore.getTimeline(2, 10).length == 0 && weetStore.getTimeline(1, null, 10) == null;
+    }
+
+    /*
+     * Tests that home timelines filled by fan-out on write match the weets merged on read, including the weets of
+     * popular users, which aren't pushed, and timelines that go back further than their buffer
+     * @return Returns true is the test passed, false is it failed
+     */
+    protected boolean testTimelineCache()
+    {
+        // Create new Weet Store whose buffers hold two weets, with room for a single buffer; users with more than one
+        // follower aren't pushed. User 1 follows users 2 and 3, and user 3 is also followed by user 4
+        WeetStore weetStore = new WeetStore();
+        FollowerStore followerStore = new FollowerStore();
+        weetStore.setFollowerStore(followerStore);
+        weetStore.enableTimelineCache(2, 1, 2);
+        followerStore.addFollower(1, 2, createDate("01/10/2012 10:00"));
+        followerStore.addFollower(1, 3, createDate("01/10/2012 10:00"));
+        followerStore.addFollower(4, 3, createDate("01/10/2012 10:00"));
+        weetStore.getTimeline(1, 10);
+
+        Weet a = new Weet(1, 2, "a", createDate("01/11/2012 10:00"));
+        Weet b = new Weet(2, 2, "b", createDate("02/11/2012 10:00"));
+        Weet c = new Weet(3, 3, "c", createDate("02/11/2012 12:00"));
+        Weet d = new Weet(4, 2, "d", createDate("03/11/2012 10:00"));
+        weetStore.addWeet( a );
+        weetStore.addWeet( b );
+        weetStore.addWeet( c );
+        weetStore.addWeet( d );
+
+        // The weet by user 3 is merged with the buffer, and the last page goes back further than the buffer
+        Weet[] latest = weetStore.getTimeline(1, 3);
+        Weet[] all = weetStore.getTimeline(1, 10);
+        if (latest.length != 3 || latest[0] != d || latest[1] != c || latest[2] != b)
+        {
+            return false;
+        }
+        if (all.length != 4 || all[0] != d || all[1] != c || all[2] != b || all[3] != a)
+        {
+            return false;
+        }
+
+        // Following someone new fills the buffer again, and reading the timeline of user 5 evicts the buffer of user 1
+        followerStore.addFollower(1, 5, createDate("01/10/2012 10:00"));
+        Weet e = new Weet(5, 5, "e", createDate("04/11/2012 10:00"));
+        weetStore.addWeet( e );
+        latest = weetStore.getTimeline(1, 2);
+        weetStore.getTimeline(5, 2);
+        Weet[] evicted = weetStore.getTimeline(1, 2);
+        return latest.length == 2 && latest[0] == e && latest[1] == d
+            && evicted.length == 2 && evicted[0] == e && evicted[1] == d;
+    }
+
+    /*
+     * Tests that the store stays consistent while several threads add weets and others read them: a weet found in the
+     * date tree must also be found by ID, pages must stay in date order, and no weet may be lost
+     * @return Returns true is the test passed, false is it failed
+     */
+    protected boolean testConcurrentWeets()
+    {
+        // Create new Weet Store; four users post 2000 weets each, weet i (i * 37 % 8000) minutes after the start, so out
+        // of date order; the last user adds them in batches
+        final WeetStore weetStore = new WeetStore();
+        final Date start = createDate("01/11/2012 10:00");
+        final AtomicBoolean writing = new AtomicBoolean(true);
+        final AtomicBoolean failed = new AtomicBoolean(false);
+
+        Thread[] writers = new Thread[4];
+        for (int t = 0; t < writers.length; t++)
+        {
+            final int user = t;
+            writers[t] = new Thread(() -> {
+                Weet[] batch = new Weet[200];
+                for (int i = user * 2000; i < (user + 1) * 2000; i++)
+                {
+                    Date date = new Date(start.getTime() + (i * 37 % 8000) * 60000L);
+                    Weet weet = new Weet(i, user, "weet " + i + " #topic" + (i % 10), date);
+                    if (user < 3)
+                    {
+                        weetStore.addWeet( weet );
+                    }
+                    else
+                    {
+                        batch[i % 200] = weet;
+                        if (i % 200 == 199)
+                        {
+                            weetStore.addWeets( batch );
+                        }
+                    }
+                }
+            });
+        }
+
+        // Readers check the latest page of weets and of a user's weets, and that weets are never lost
+        Thread[] readers = new Thread[4];
+        for (int t = 0; t < readers.length; t++)
+        {
+            final User user = new User("User " + t, t, start);
+            readers[t] = new Thread(() -> {
+                int seen = 0;
+                while (writing.get() && !failed.get())
+                {
+                    Weet[] page = weetStore.getWeets(0, 50);
+                    Weet[] byUser = weetStore.getWeetsByUser(user, 0, 50);
+                    for (int i = 0; i < page.length; i++)
+                    {
+                        if (weetStore.getWeet(page[i].getId()) != page[i]
+                            || (i > 0 && !page[i].getDateWeeted().before(page[i - 1].getDateWeeted())))
+                        {
+                            failed.set(true);
+                        }
+                    }
+                    for (int i = 1; i < byUser.length; i++)
+                    {
+                        if (!byUser[i].getDateWeeted().before(byUser[i - 1].getDateWeeted()))
+                        {
+                            failed.set(true);
+                        }
+                    }
+                    int count = weetStore.countWeetsBefore(createDate("01/01/2030 00:00"));
+                    if (count < seen)
+                    {
+                        failed.set(true);
+                    }
+                    seen = count;
+                    weetStore.getTrending();
+                }
+            });
+        }
+
+        if (!runThreads(writers, readers, writing, failed))
+        {
+            return false;
+        }
+
+        // The most recent weet was posted 7999 minutes after the start, and the others one minute earlier each
+        Weet[] weets = weetStore.getWeets();
+        for (int i = 0; i < weets.length; i++)
+        {
+            if ((weets[i].getId() * 37 % 8000) != 7999 - i || weetStore.getWeet(i) == null)
+            {
+                return false;
+            }
+        }
+        return !failed.get() && weets.length == 8000 && weetStore.getTrending(10)[9] != null;
+    }
+
+    /*
+     * Starts the readers and the writers, waits for the writers to finish, then tells the readers to stop; any
+     * exception thrown by one of the threads sets failed
+     * @return Returns true if all threads finished, false if the test was interrupted
+     */
+    private boolean runThreads(Thread[] writers, Thread[] readers, AtomicBoolean writing, AtomicBoolean failed)
+    {
+        try {
+            for (int t = 0; t < readers.length; t++)
+            {
+                readers[t].setUncaughtExceptionHandler((thread, e) -> failed.set(true));
+                readers[t].start();
+            }
+            for (int t = 0; t < writers.length; t++)
+            {
+                writers[t].setUncaughtExceptionHandler((thread, e) -> failed.set(true));
+                writers[t].start();
+            }
+            for (int t = 0; t < writers.length; t++)
+            {
+                writers[t].join();
+            }
+            writing.set(false);
+            for (int t = 0; t < readers.length; t++)
+            {
+                readers[t].join();
+            }
+            return true;
+        }
+        catch (InterruptedException ie)
+        {
+            return false;
+        }
+    }
+
     /*
      * Returns a Date based on the input string
      * @param inputString Takes a string of form dd/MM/yy hour:minute. Example: 01/03/12 18:00